@@ -0,0 +1,239 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * Provides helpset content from a standalone zip or jar archive, so the help can be updated independently of the
+ * application. The archive is opened as NIO zip file system, and pages are shown via URLs with their own handler
+ * reading from it - relative links and images inside the archive work as usual. An entry that only exists gzip
+ * compressed is provided under its uncompressed name.
+ */
+public class ArchiveHelpContentProvider implements HelpContentProvider, Closeable {
+
+  /** Protocol of URLs pointing into archives. */
+  public static final String PROTOCOL = "helparchive";
+
+  private static final String ENTRY_SEPARATOR = "!/";
+
+  private final Path archive;
+
+  private final String archiveURLPath;
+
+  private final FileSystem fileSystem;
+
+  private final Path root;
+
+  private final URLStreamHandler handler = new ArchiveURLStreamHandler();
+
+  /**
+   * Creates a new instance of ArchiveHelpContentProvider and opens the archive.
+   *
+   * @param archive zip or jar file.
+   * @param rootPath path of the helpset root inside the archive, e.g. "/" or "/help".
+   * @throws IOException on error opening the archive.
+   */
+  public ArchiveHelpContentProvider(final Path archive, final String rootPath) throws IOException {
+    this.archive = archive.toAbsolutePath().normalize();
+    this.archiveURLPath = this.archive.toUri().getRawPath();
+    this.fileSystem = FileSystems.newFileSystem(this.archive, (ClassLoader) null);
+    this.root = this.fileSystem.getPath("/").resolve(rootPath).normalize();
+  }
+
+  @Override
+  public String getName() {
+    return this.archive + "!" + this.root;
+  }
+
+  @Override
+  public URL getURL(final String path) {
+    final Path entry = resolve(path);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      final String entryPath = new URI(null, null, entry.toString(), null).getRawPath();
+      return new URL(PROTOCOL, "", -1, this.archiveURLPath + "!" + entryPath, this.handler);
+    } catch (final URISyntaxException | MalformedURLException ex) {
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public InputStream getInputStream(final String path) throws IOException {
+    final Path entry = resolve(path);
+    if (entry == null) {
+      return null;
+    }
+    if (Files.isRegularFile(entry)) {
+      return Files.newInputStream(entry);
+    }
+    return CompressedHelpPage.decompress(Files.newInputStream(getCompressedEntry(entry)));
+  }
+
+  /**
+   * Returns the entry for the given path if it exists as it is or compressed - paths leading outside of the helpset
+   * root are not resolved.
+   */
+  private Path resolve(final String path) {
+    if (path == null) {
+      return null;
+    }
+    try {
+      final Path entry = this.root.resolve(path).normalize();
+      if (!entry.startsWith(this.root) || entry.equals(this.root)) {
+        return null;
+      }
+      return Files.isRegularFile(entry) || Files.isRegularFile(getCompressedEntry(entry)) ? entry : null;
+    } catch (final InvalidPathException ex) {
+      return null;
+    }
+  }
+
+  private static Path getCompressedEntry(final Path entry) {
+    return entry.resolveSibling(entry.getFileName() + CompressedHelpPage.FILE_SUFFIX);
+  }
+
+  /**
+   * Returns the entry a URL created by this provider points to.
+   */
+  private Path getEntry(final URL url) throws IOException {
+    final String file = url.getPath();
+    final int indexOfSeparator = file.indexOf(ENTRY_SEPARATOR);
+    if (indexOfSeparator < 0 || !file.substring(0, indexOfSeparator).equals(this.archiveURLPath)) {
+      throw new FileNotFoundException(url.toExternalForm());
+    }
+    String entryPath = file.substring(indexOfSeparator + 1);
+    try {
+      entryPath = new URI(entryPath).getPath();
+    } catch (final URISyntaxException ex) {
+      // not escaped, use as it is
+    }
+    final Path entry = this.fileSystem.getPath(entryPath).normalize();
+    if (!entry.startsWith(this.root) || !Files.isRegularFile(entry)) {
+      throw new FileNotFoundException(url.toExternalForm());
+    }
+    return entry;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.fileSystem.close();
+  }
+
+  /**
+   * Opens URLs created by this provider.
+   */
+  private class ArchiveURLStreamHandler extends URLStreamHandler {
+
+    @Override
+    protected URLConnection openConnection(final URL u) {
+      return new ArchiveURLConnection(u);
+    }
+  }
+
+  /**
+   * Connection to an archive entry.
+   */
+  private class ArchiveURLConnection extends URLConnection {
+
+    private Path entry;
+
+    public ArchiveURLConnection(final URL url) {
+      super(url);
+    }
+
+    @Override
+    public void connect() throws IOException {
+      if (!this.connected) {
+        this.entry = getEntry(getURL());
+        this.connected = true;
+      }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      connect();
+      return Files.newInputStream(this.entry);
+    }
+
+    @Override
+    public String getContentType() {
+      final String contentType = guessContentTypeFromName(getURL().getPath());
+      return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+      try {
+        connect();
+        return Files.size(this.entry);
+      } catch (final IOException ex) {
+        return -1;
+      }
+    }
+
+    @Override
+    public int getContentLength() {
+      final long contentLength = getContentLengthLong();
+      return contentLength > Integer.MAX_VALUE ? -1 : (int) contentLength;
+    }
+
+    @Override
+    public long getLastModified() {
+      try {
+        connect();
+        return Files.getLastModifiedTime(this.entry).toMillis();
+      } catch (final IOException ex) {
+        return 0;
+      }
+    }
+  }
+}
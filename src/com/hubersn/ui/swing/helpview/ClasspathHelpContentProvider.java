@@ -0,0 +1,100 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Provides helpset content from the classpath, relative to a root path - page names are URL-encoded before they
+ * are looked up. A resource that only exists gzip compressed is provided under its uncompressed name.
+ */
+public class ClasspathHelpContentProvider implements HelpContentProvider {
+
+  private final String rootPath;
+
+  /**
+   * Creates a new instance of ClasspathHelpContentProvider.
+   *
+   * @param rootPath root path of the helpset in the classpath, e.g. "/help".
+   */
+  public ClasspathHelpContentProvider(final String rootPath) {
+    this.rootPath = rootPath;
+  }
+
+  @Override
+  public String getName() {
+    return this.rootPath;
+  }
+
+  @Override
+  public URL getURL(final String path) {
+    try {
+      // every path segment is encoded on its own, so pages can be located in subdirectories
+      final StringBuilder encodedPath = new StringBuilder(this.rootPath);
+      String encodedSegment = "";
+      for (final String segment : path.split("/", -1)) {
+        encodedSegment = URLEncoder.encode(segment, "UTF-8");
+        encodedPath.append('/').append(encodedSegment);
+      }
+      final URL url = HelpSet.class.getResource(encodedPath.toString());
+      if (url != null) {
+        return url;
+      }
+      final URL compressedURL = HelpSet.class.getResource(encodedPath + CompressedHelpPage.FILE_SUFFIX);
+      return compressedURL == null ? null : new URL(compressedURL, encodedSegment);
+    } catch (final MalformedURLException ex) {
+      ex.printStackTrace();
+      return null;
+    } catch (final UnsupportedEncodingException ex) {
+      // cannot happen, UTF-8 is always supported
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public InputStream getInputStream(final String path) throws IOException {
+    final InputStream is = HelpSet.class.getResourceAsStream(this.rootPath + "/" + path);
+    if (is != null) {
+      return is;
+    }
+    return CompressedHelpPage.decompress(
+        HelpSet.class.getResourceAsStream(this.rootPath + "/" + path + CompressedHelpPage.FILE_SUFFIX));
+  }
+}
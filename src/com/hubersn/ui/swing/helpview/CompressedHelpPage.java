@@ -0,0 +1,206 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed help pages - a page can be stored gzip compressed next to or instead of its HTML file (page.html becomes
+ * page.html.gz), it is decompressed while it is read. Links, map entries and page URLs always use the name of the
+ * uncompressed page. The main method is the build-time tool to compress the pages.
+ * <p>
+ * If both forms of a page are present, the compressed page is used - for pages in the file system only if it is not
+ * older than its HTML page.
+ */
+public class CompressedHelpPage {
+
+  /** File name suffix of compressed pages, appended to the file name of the HTML page. */
+  public static final String FILE_SUFFIX = ".gz";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private CompressedHelpPage() {
+    // no instances
+  }
+
+  /**
+   * Returns the URL of the compressed form of the page with the given URL (a reference part of the URL is ignored).
+   *
+   * @param url URL of HTML page.
+   * @return URL of compressed page.
+   * @throws IOException if the URL cannot be constructed.
+   */
+  public static URL getCompressedURL(final URL url) throws IOException {
+    // resolved relative to the page, so URLs with their own handler (e.g. into archives) keep it
+    final String path = url.getPath();
+    return new URL(url, path.substring(path.lastIndexOf('/') + 1) + FILE_SUFFIX);
+  }
+
+  /**
+   * Opens the compressed form of the page with the given URL for reading, if there is a usable one - it is not
+   * used if the HTML page is newer.
+   *
+   * @param url URL of HTML page, a reference (#anchor) is ignored.
+   * @return stream delivering the decompressed page, or null if there is no usable compressed page.
+   * @throws IOException on error opening an existing compressed page, e.g. if it is not in gzip format.
+   */
+  public static InputStream openStream(final URL url) throws IOException {
+    final URL compressedURL = getCompressedURL(url);
+    if ("file".equals(compressedURL.getProtocol())) {
+      final File compressedFile = PrecompiledHelpPage.getFile(compressedURL);
+      final File htmlFile = PrecompiledHelpPage.getFile(url);
+      if (!compressedFile.isFile() || htmlFile.lastModified() > compressedFile.lastModified()) {
+        return null;
+      }
+    }
+    try {
+      return decompress(compressedURL.openStream());
+    } catch (final FileNotFoundException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Opens the page with the given URL for reading - from its compressed form if available, otherwise as it is.
+   *
+   * @param url URL of page.
+   * @return stream delivering the page content.
+   * @throws IOException on error opening the page.
+   */
+  public static InputStream openPageStream(final URL url) throws IOException {
+    final InputStream is = openStream(url);
+    return is != null ? is : url.openStream();
+  }
+
+  /**
+   * Returns a stream decompressing the given gzip compressed stream - the given stream is closed if it does not
+   * start with a valid gzip header.
+   *
+   * @param is compressed stream, may be null.
+   * @return decompressing stream, null if the given stream is null.
+   * @throws IOException on error reading the gzip header.
+   */
+  static InputStream decompress(final InputStream is) throws IOException {
+    if (is == null) {
+      return null;
+    }
+    try {
+      return new GZIPInputStream(is, BUFFER_SIZE);
+    } catch (final IOException ex) {
+      is.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Writes the compressed form of the given HTML file next to it.
+   *
+   * @param htmlFile HTML file.
+   * @param replace delete the HTML file after compressing it?
+   * @throws IOException on error reading or writing.
+   */
+  public static void compress(final File htmlFile, final boolean replace) throws IOException {
+    final File compressedFile = new File(htmlFile.getPath() + FILE_SUFFIX);
+    try (OutputStream os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(compressedFile)),
+                                                BUFFER_SIZE)) {
+      Files.copy(htmlFile.toPath(), os);
+    } catch (final IOException ex) {
+      compressedFile.delete();
+      throw ex;
+    }
+    // keep the modification time, so the compressed page is never considered older than its HTML page
+    compressedFile.setLastModified(htmlFile.lastModified());
+    if (replace && !htmlFile.delete()) {
+      throw new IOException("Cannot delete " + htmlFile);
+    }
+  }
+
+  /**
+   * Compresses the HTML pages of the files or directories given as arguments - with -replace, the HTML pages are
+   * deleted after compressing them.
+   *
+   * @param args files and directories, optionally preceded by -replace.
+   */
+  public static void main(final String[] args) {
+    if (args == null || args.length == 0) {
+      System.err.println("CompressedHelpPage needs files or directories with HTML pages as arguments, optionally preceded by -replace.");
+      System.exit(1);
+    }
+    boolean replace = false;
+    int firstFile = 0;
+    if (args.length > 1 && "-replace".equals(args[0])) {
+      replace = true;
+      firstFile = 1;
+    }
+    int failures = 0;
+    for (int i = firstFile; i < args.length; i++) {
+      failures += compressAll(new File(args[i]), replace);
+    }
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  private static int compressAll(final File file, final boolean replace) {
+    int failures = 0;
+    if (file.isDirectory()) {
+      final File[] children = file.listFiles();
+      if (children != null) {
+        for (final File child : children) {
+          failures += compressAll(child, replace);
+        }
+      }
+    } else {
+      final String name = file.getName().toLowerCase();
+      if (name.endsWith(".html") || name.endsWith(".htm")) {
+        try {
+          compress(file, replace);
+          System.out.println("Compressed " + file);
+        } catch (final IOException ex) {
+          System.err.println("Cannot compress " + file + ": " + ex.getMessage());
+          failures++;
+        }
+      }
+    }
+    return failures;
+  }
+}
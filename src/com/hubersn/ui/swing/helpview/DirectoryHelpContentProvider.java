@@ -0,0 +1,156 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * Provides helpset content from a directory in the file system, so the help can be updated independently of the
+ * application. Content is read through NIO channels, pages are shown via their file: URLs. A resource that only
+ * exists gzip compressed is provided under its uncompressed name.
+ */
+public class DirectoryHelpContentProvider implements HelpContentProvider {
+
+  private final Path directory;
+
+  /**
+   * Creates a new instance of DirectoryHelpContentProvider.
+   *
+   * @param directory root directory of the helpset.
+   */
+  public DirectoryHelpContentProvider(final Path directory) {
+    this.directory = directory.toAbsolutePath().normalize();
+  }
+
+  /**
+   * Returns the root directory of the helpset.
+   *
+   * @return absolute, normalized directory.
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  @Override
+  public String getName() {
+    return this.directory.toString();
+  }
+
+  @Override
+  public URL getURL(final String path) {
+    final Path file = resolve(path);
+    if (file == null) {
+      return null;
+    }
+    try {
+      return file.toUri().toURL();
+    } catch (final MalformedURLException ex) {
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Returns the URL the given path has inside the directory, whether the file exists or not - e.g. to find the
+   * cached content of a deleted file.
+   *
+   * @param path path relative to the directory.
+   * @return URL, null if the path leads outside of the directory.
+   */
+  public URL getLocationURL(final String path) {
+    final Path file = toFile(path);
+    if (file == null) {
+      return null;
+    }
+    try {
+      return file.toUri().toURL();
+    } catch (final MalformedURLException ex) {
+      ex.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public InputStream getInputStream(final String path) throws IOException {
+    final Path file = resolve(path);
+    if (file == null) {
+      return null;
+    }
+    if (Files.isRegularFile(file)) {
+      return Files.newInputStream(file);
+    }
+    return CompressedHelpPage.decompress(Files.newInputStream(getCompressedFile(file)));
+  }
+
+  /**
+   * Returns the file for the given path if it exists as it is or compressed - paths leading outside of the
+   * directory are not resolved.
+   */
+  private Path resolve(final String path) {
+    final Path file = toFile(path);
+    if (file == null) {
+      return null;
+    }
+    return Files.isRegularFile(file) || Files.isRegularFile(getCompressedFile(file)) ? file : null;
+  }
+
+  /**
+   * Returns the file for the given path whether it exists or not - paths leading outside of the directory are not
+   * resolved.
+   */
+  private Path toFile(final String path) {
+    if (path == null) {
+      return null;
+    }
+    try {
+      final Path file = this.directory.resolve(path).normalize();
+      if (!file.startsWith(this.directory) || file.equals(this.directory)) {
+        return null;
+      }
+      return file;
+    } catch (final InvalidPathException ex) {
+      return null;
+    }
+  }
+
+  private static Path getCompressedFile(final Path file) {
+    return file.resolveSibling(file.getFileName() + CompressedHelpPage.FILE_SUFFIX);
+  }
+}
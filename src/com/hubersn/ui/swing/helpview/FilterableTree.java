@@ -32,24 +32,52 @@ For more information, please refer to <http://unlicense.org/>
 
 package com.hubersn.ui.swing.helpview;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JTree;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 /**
  * Model-based filtered tree implementation - needs instances of FilterableNode in the tree model, and
  * works as a combination of FilterableTreeModel and FilterableNode and matches on TreeNode.toString().
+ * The tree can be filtered immediately, or while the user types with filterTreeLater - then the node texts are
+ * matched in the background, and the result is applied at once.
  */
 public class FilterableTree extends JTree {
 
   private static final long serialVersionUID = 1L;
 
+  /** Delay in milliseconds after the last call of filterTreeLater before the tree is filtered. */
+  public static final int FILTER_DELAY = 200;
+
   private FilterableTreeModel filterableTreeModel;
 
+  private final Timer filterTimer;
+
+  private String pendingFilterText = "";
+
+  private boolean pendingLeafsOnly;
+
+  private boolean pendingCaseSensitive;
+
+  /** Incremented for every filter operation, so outdated background results are dropped. */
+  private volatile int filterGeneration = 0;
+
+  /** Are paths expanded in a batch, below a path without expanded descendants? */
+  private boolean batchExpansion = false;
+
   /**
    * Call to filter the tree based on the given filter text with the given operation modes - automatically
    * expands the full resulting tree.
@@ -59,56 +87,212 @@ public class FilterableTree extends JTree {
    * @param caseSensitive match text case sensitive?
    */
   public void filterTree(final String filterText, final boolean leafsOnly, final boolean caseSensitive) {
-    filterNodes(filterText, (FilterableNode)this.filterableTreeModel.getRoot(), leafsOnly, caseSensitive);
-    this.filterableTreeModel.reload();
-    expandAll(this);
+    // a pending or running background filter would overwrite this result
+    this.filterTimer.stop();
+    this.filterGeneration++;
+    final List<FilterableNode> nodes = new ArrayList<>();
+    collectNodes((FilterableNode)this.filterableTreeModel.getRoot(), leafsOnly, nodes);
+    final String[] labels = getLabels(nodes, caseSensitive);
+    applyFilter(nodes, match(labels, fold(filterText, caseSensitive), this.filterGeneration));
   }
 
-  private static void expandAll(final JTree tree) {
-    expandAll(tree, new TreePath(tree.getModel().getRoot()));
+  /**
+   * Filters the tree like filterTree, but only after FILTER_DELAY without further calls, e.g. while the user types
+   * the filter text. The node texts are matched in the background, nodes added or removed in the meantime are not
+   * affected by the filter.
+   *
+   * @param filterText text to filter for.
+   * @param leafsOnly only check leaf nodes for filter match (true), or all nodes (false).
+   * @param caseSensitive match text case sensitive?
+   */
+  public void filterTreeLater(final String filterText, final boolean leafsOnly, final boolean caseSensitive) {
+    this.pendingFilterText = filterText;
+    this.pendingLeafsOnly = leafsOnly;
+    this.pendingCaseSensitive = caseSensitive;
+    // results of a running background filter are outdated now
+    this.filterGeneration++;
+    this.filterTimer.restart();
   }
 
-  private static void expandAll(final JTree tree, final TreePath parent) {
-    TreeNode node = (TreeNode) parent.getLastPathComponent();
-    if (node.getChildCount() >= 0) {
-      for (Enumeration<?> e = node.children(); e.hasMoreElements();) {
-        TreeNode n = (TreeNode) e.nextElement();
-        TreePath path = parent.pathByAddingChild(n);
-        expandAll(tree, path);
+  /**
+   * Filters the tree like filterTreeLater, but starts matching the node texts in the background right away, e.g. if
+   * the caller has already waited for the user to stop typing.
+   *
+   * @param filterText text to filter for.
+   * @param leafsOnly only check leaf nodes for filter match (true), or all nodes (false).
+   * @param caseSensitive match text case sensitive?
+   */
+  public void filterTreeInBackground(final String filterText, final boolean leafsOnly, final boolean caseSensitive) {
+    this.filterTimer.stop();
+    this.pendingFilterText = filterText;
+    this.pendingLeafsOnly = leafsOnly;
+    this.pendingCaseSensitive = caseSensitive;
+    startBackgroundFilter();
+  }
+
+  private void startBackgroundFilter() {
+    final int generation = ++this.filterGeneration;
+    final FilterableNode root = (FilterableNode)this.filterableTreeModel.getRoot();
+    // the nodes and their texts are collected here, the tree must only be accessed on the event dispatch thread
+    final List<FilterableNode> nodes = new ArrayList<>();
+    collectNodes(root, this.pendingLeafsOnly, nodes);
+    final String[] labels = getLabels(nodes, this.pendingCaseSensitive);
+    final String needle = fold(this.pendingFilterText, this.pendingCaseSensitive);
+    new SwingWorker<boolean[], Void>() {
+
+      @Override
+      protected boolean[] doInBackground() {
+        return match(labels, needle, generation);
+      }
+
+      @Override
+      protected void done() {
+        final FilterableTree tree = FilterableTree.this;
+        if (generation != tree.filterGeneration || root != tree.filterableTreeModel.getRoot()) {
+          return;
+        }
+        try {
+          applyFilter(nodes, get());
+        } catch (final InterruptedException | ExecutionException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }.execute();
+  }
+
+  /**
+   * Returns for every label if it contains the given text - stops early, returning null, if a newer filter
+   * operation has been started.
+   */
+  private boolean[] match(final String[] labels, final String needle, final int generation) {
+    final boolean[] matches = new boolean[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      if ((i & 0xfff) == 0 && generation != this.filterGeneration) {
+        return null;
       }
+      matches[i] = labels[i].indexOf(needle) >= 0;
     }
-    tree.expandPath(parent);
+    return matches;
   }
 
-  private static void filterNodes(final String filterText,
-                                  final FilterableNode root,
-                                  final boolean leafsOnly,
-                                  final boolean caseSensitive) {
+  /**
+   * Sets the visibility of the given nodes, then shows the filtered tree with one structure change and expands
+   * it - the selection is kept if it is still visible.
+   */
+  private void applyFilter(final List<FilterableNode> nodes, final boolean[] matches) {
+    if (matches == null) {
+      return;
+    }
+    final TreePath[] selectionPaths = getSelectionPaths();
+    for (int i = 0; i < matches.length; i++) {
+      nodes.get(i).setVisible(matches[i]);
+    }
+    final FilterableNode root = (FilterableNode)this.filterableTreeModel.getRoot();
+    root.updateVisibility();
+    this.filterableTreeModel.reload();
+    expandAll(new TreePath(root));
+    if (selectionPaths != null) {
+      final List<TreePath> visiblePaths = new ArrayList<>();
+      for (final TreePath selectionPath : selectionPaths) {
+        if (isInModel(selectionPath)) {
+          visiblePaths.add(selectionPath);
+        }
+      }
+      if (!visiblePaths.isEmpty()) {
+        setSelectionPaths(visiblePaths.toArray(new TreePath[visiblePaths.size()]));
+        scrollPathToVisible(visiblePaths.get(0));
+      }
+    }
+  }
+
+  private boolean isInModel(final TreePath path) {
+    for (TreePath child = path; child.getParentPath() != null; child = child.getParentPath()) {
+      final Object parent = child.getParentPath().getLastPathComponent();
+      if (this.filterableTreeModel.getIndexOfChild(parent, child.getLastPathComponent()) < 0) {
+        return false;
+      }
+    }
+    return path.getPathComponent(0) == this.filterableTreeModel.getRoot();
+  }
+
+  /**
+   * Replaces the root node of the tree, e.g. when the content of the tree has been loaded again.
+   *
+   * @param root new root node.
+   */
+  public void setRoot(final TreeNode root) {
+    this.filterableTreeModel.setRoot(root);
+  }
+
+  /**
+   * Expands the given path and all paths below it that are visible in the filtered model. If no path below the
+   * given path has been expanded or collapsed before (e.g. after the tree has been reloaded), the paths are
+   * expanded as a batch, which is much faster for large trees.
+   *
+   * @param path path to expand.
+   */
+  public void expandAll(final TreePath path) {
+    boolean noToggledDescendants = true;
+    final Enumeration<TreePath> toggledPaths = getDescendantToggledPaths(path);
+    while (noToggledDescendants && toggledPaths != null && toggledPaths.hasMoreElements()) {
+      noToggledDescendants = path.equals(toggledPaths.nextElement());
+    }
+    this.batchExpansion = noToggledDescendants;
+    try {
+      expandAllBelow(path);
+    } finally {
+      this.batchExpansion = false;
+    }
+  }
+
+  private void expandAllBelow(final TreePath parent) {
+    // only the visible children, as provided by the model
+    final Object node = parent.getLastPathComponent();
+    final int childCount = this.filterableTreeModel.getChildCount(node);
+    for (int i = 0; i < childCount; i++) {
+      expandAllBelow(parent.pathByAddingChild(this.filterableTreeModel.getChild(node, i)));
+    }
+    expandPath(parent);
+  }
+
+  /**
+   * Returns the expanded descendants of the given path - while paths are expanded as a batch, the only expanded
+   * descendants are the ones expanded by the batch itself, which are known to the UI already. So the expensive
+   * lookup the UI does for every expanded path is skipped.
+   *
+   * @param parent path.
+   * @return expanded descendants, null during a batch expansion.
+   */
+  @Override
+  public Enumeration<TreePath> getExpandedDescendants(final TreePath parent) {
+    return this.batchExpansion ? null : super.getExpandedDescendants(parent);
+  }
+
+  private static void collectNodes(final FilterableNode root,
+                                   final boolean leafsOnly,
+                                   final List<FilterableNode> nodes) {
     for (int i = 0; i < root.getChildCount(); i++) {
       final TreeNode tn = root.getChildAt(i);
       if (tn instanceof FilterableNode) {
         final FilterableNode in = (FilterableNode)tn;
         if (!leafsOnly || in.isLeaf()) {
-          in.setVisible(matches(in, filterText, caseSensitive));
+          nodes.add(in);
         }
-        filterNodes(filterText, in, leafsOnly, caseSensitive);
+        collectNodes(in, leafsOnly, nodes);
       }
     }
   }
 
-  private static boolean matches(final FilterableNode node, final String textToMatch, final boolean caseSensitive) {
-    if (textToMatch.isEmpty()) {
-      return true;
+  private static String[] getLabels(final List<FilterableNode> nodes, final boolean caseSensitive) {
+    final String[] labels = new String[nodes.size()];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = nodes.get(i).getFilterLabel(caseSensitive);
     }
-    return containsText(node.toString(), textToMatch, caseSensitive);
+    return labels;
   }
 
-  private static boolean containsText(String haystack, String needle, final boolean caseSensitive) {
-    if (!caseSensitive) {
-      haystack = haystack.toLowerCase();
-      needle = needle.toLowerCase();
-    }
-    return haystack.indexOf(needle) >= 0;
+  private static String fold(final String text, final boolean caseSensitive) {
+    return caseSensitive ? text : text.toLowerCase();
   }
 
   /**
@@ -120,6 +304,13 @@ public class FilterableTree extends JTree {
     super();
     this.filterableTreeModel = new FilterableTreeModel(root);
     setModel(this.filterableTreeModel);
+    this.filterTimer = new Timer(FILTER_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        startBackgroundFilter();
+      }
+    });
+    this.filterTimer.setRepeats(false);
   }
 
   /**
@@ -169,10 +360,58 @@ public class FilterableTree extends JTree {
       return ((TreeNode)parent).getChildCount();
     }
 
+    /**
+     * Returns the index of the given child among the children of the given parent supporting filtering.
+     *
+     * @param parent parent node.
+     * @param child child node.
+     * @return index of child, -1 if it is not a (visible) child of parent.
+     */
+    @Override
+    public int getIndexOfChild(final Object parent, final Object child) {
+      if (this.filterActive && parent instanceof FilterableNode && child instanceof TreeNode) {
+        return ((FilterableNode)parent).getIndex((TreeNode)child, this.filterActive);
+      }
+      return super.getIndexOfChild(parent, child);
+    }
+
+    /**
+     * Notifies the listeners about inserted child nodes - the given indices are the indices among all children of
+     * the node, like for DefaultTreeModel, and are mapped to the filtered indices; children hidden by the filter are
+     * left out.
+     *
+     * @param node parent node.
+     * @param childIndices indices of inserted children, in ascending order.
+     */
+    @Override
+    public void nodesWereInserted(final TreeNode node, final int[] childIndices) {
+      if (!this.filterActive || !(node instanceof FilterableNode) || childIndices == null) {
+        super.nodesWereInserted(node, childIndices);
+        return;
+      }
+      final int[] filteredIndices = new int[childIndices.length];
+      final Object[] children = new Object[childIndices.length];
+      int count = 0;
+      for (final int childIndex : childIndices) {
+        final TreeNode child = node.getChildAt(childIndex);
+        final int filteredIndex = getIndexOfChild(node, child);
+        if (filteredIndex >= 0) {
+          filteredIndices[count] = filteredIndex;
+          children[count++] = child;
+        }
+      }
+      if (count > 0) {
+        fireTreeNodesInserted(this, getPathToRoot(node), Arrays.copyOf(filteredIndices, count),
+                              Arrays.copyOf(children, count));
+      }
+    }
+
   }
 
   /**
-   * TreeNode implementation providing a "visible" attribute.
+   * TreeNode implementation providing a "visible" attribute. The indices of the children that are visible or have
+   * visible descendants are cached, so the filtered tree model can answer in constant time - the cache is updated
+   * in one pass by updateVisibility, or on demand after nodes have been changed.
    */
   public static class FilterableNode extends DefaultMutableTreeNode {
 
@@ -180,6 +419,17 @@ public class FilterableTree extends JTree {
 
     private boolean visible = true;
 
+    /** Are visibleChildIndices and anyChildVisible up to date? */
+    private boolean visibilityValid = false;
+
+    /** Indices of the children that are visible or have visible descendants, null if all of them are. */
+    private int[] visibleChildIndices = null;
+
+    private boolean anyChildVisible = false;
+
+    /** Lower case text of this node for case insensitive filtering, created on first use. */
+    private String foldedLabel = null;
+
     /**
      * Creates a new instance of FilterableNode containing given user object.
      *
@@ -189,18 +439,96 @@ public class FilterableTree extends JTree {
       super(userObject);
     }
 
-    private boolean isAnyChildVisible() {
-      if (this.children == null) {
-        return false;
+    @Override
+    public void setUserObject(final Object userObject) {
+      super.setUserObject(userObject);
+      this.foldedLabel = null;
+    }
+
+    /**
+     * Returns the text of this node the filter text is matched against.
+     *
+     * @param caseSensitive match text case sensitive?
+     * @return text of node, in lower case if not matched case sensitive.
+     */
+    public String getFilterLabel(final boolean caseSensitive) {
+      if (caseSensitive) {
+        return toString();
+      }
+      if (this.foldedLabel == null) {
+        this.foldedLabel = toString().toLowerCase();
       }
-      final Enumeration<?> e = this.children.elements();
-      while (e.hasMoreElements()) {
-        final FilterableNode node = (FilterableNode)e.nextElement();
-        if (node.isVisible() || node.isAnyChildVisible()) {
-          return true;
+      return this.foldedLabel;
+    }
+
+    /**
+     * Updates the cached visibility of all nodes of the subtree below this node, bottom-up in one pass.
+     */
+    public void updateVisibility() {
+      for (int i = 0; i < getChildCount(); i++) {
+        final TreeNode child = getChildAt(i);
+        if (child instanceof FilterableNode) {
+          ((FilterableNode)child).updateVisibility();
         }
       }
-      return false;
+      this.visibilityValid = false;
+      validateVisibility();
+    }
+
+    /**
+     * Computes the cached visibility of this node's children, if not up to date - the children are validated on
+     * demand.
+     */
+    private void validateVisibility() {
+      if (this.visibilityValid) {
+        return;
+      }
+      final int childCount = getChildCount();
+      final int[] indices = new int[childCount];
+      int visibleCount = 0;
+      for (int i = 0; i < childCount; i++) {
+        final TreeNode child = getChildAt(i);
+        if (!(child instanceof FilterableNode) || ((FilterableNode)child).isSubtreeVisible()) {
+          indices[visibleCount++] = i;
+        }
+      }
+      this.visibleChildIndices = visibleCount == childCount ? null : Arrays.copyOf(indices, visibleCount);
+      this.anyChildVisible = visibleCount > 0;
+      this.visibilityValid = true;
+    }
+
+    /**
+     * Marks the cached visibility of this node and its ancestors as outdated.
+     */
+    private void invalidateVisibility() {
+      for (TreeNode node = this; node instanceof FilterableNode; node = node.getParent()) {
+        final FilterableNode filterableNode = (FilterableNode)node;
+        if (!filterableNode.visibilityValid) {
+          // ancestors depending on an outdated node have been invalidated with it
+          break;
+        }
+        filterableNode.visibilityValid = false;
+      }
+    }
+
+    private boolean isSubtreeVisible() {
+      if (this.visible) {
+        return true;
+      }
+      validateVisibility();
+      return this.anyChildVisible;
+    }
+
+    @Override
+    public void insert(final MutableTreeNode newChild, final int childIndex) {
+      super.insert(newChild, childIndex);
+      invalidateVisibility();
+    }
+
+    @Override
+    public void remove(final int childIndex) {
+      super.remove(childIndex);
+      invalidateVisibility();
     }
 
     /**
@@ -217,22 +545,14 @@ public class FilterableTree extends JTree {
       if (this.children == null) {
         throw new ArrayIndexOutOfBoundsException("node has no children");
       }
-
-      int realIndex = -1;
-      int visibleIndex = -1;
-      final Enumeration<?> e = this.children.elements();
-      while (e.hasMoreElements()) {
-        final FilterableNode node = (FilterableNode)e.nextElement();
-        if (node.isVisible() || node.isAnyChildVisible()) {
-          visibleIndex++;
-        }
-        realIndex++;
-        if (visibleIndex == index) {
-          return (TreeNode)this.children.elementAt(realIndex);
-        }
+      validateVisibility();
+      if (this.visibleChildIndices == null) {
+        return super.getChildAt(index);
       }
-
-      throw new ArrayIndexOutOfBoundsException("index unmatched");
+      if (index < 0 || index >= this.visibleChildIndices.length) {
+        throw new ArrayIndexOutOfBoundsException("index unmatched");
+      }
+      return super.getChildAt(this.visibleChildIndices[index]);
     }
 
     /**
@@ -245,20 +565,28 @@ public class FilterableTree extends JTree {
       if (!filterIsActive) {
         return super.getChildCount();
       }
-      if (this.children == null) {
-        return 0;
-      }
+      validateVisibility();
+      return this.visibleChildIndices == null ? super.getChildCount() : this.visibleChildIndices.length;
+    }
 
-      int count = 0;
-      final Enumeration<?> e = this.children.elements();
-      while (e.hasMoreElements()) {
-        final FilterableNode node = (FilterableNode)e.nextElement();
-        if (node.isVisible() || node.isAnyChildVisible()) {
-          count++;
-        }
+    /**
+     * Returns the index of the given child of this node depending on given filter state.
+     *
+     * @param child child node.
+     * @param filterIsActive filtering active?
+     * @return index of child, -1 if it is not a (visible) child of this node.
+     */
+    public int getIndex(final TreeNode child, final boolean filterIsActive) {
+      final int index = super.getIndex(child);
+      if (!filterIsActive || index < 0) {
+        return index;
       }
-
-      return count;
+      validateVisibility();
+      if (this.visibleChildIndices == null) {
+        return index;
+      }
+      final int visibleIndex = Arrays.binarySearch(this.visibleChildIndices, index);
+      return visibleIndex < 0 ? -1 : visibleIndex;
     }
 
     /**
@@ -267,7 +595,14 @@ public class FilterableTree extends JTree {
      * @param visible node visible?
      */
     public void setVisible(final boolean visible) {
-      this.visible = visible;
+      if (this.visible != visible) {
+        this.visible = visible;
+        // the parent's visible children change
+        final TreeNode parent = getParent();
+        if (parent instanceof FilterableNode) {
+          ((FilterableNode)parent).invalidateVisibility();
+        }
+      }
     }
 
     /**
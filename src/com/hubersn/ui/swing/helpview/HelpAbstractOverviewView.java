@@ -34,10 +34,24 @@ package com.hubersn.ui.swing.helpview;
 
 import java.awt.BorderLayout;
 import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -45,12 +59,20 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.JTree;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeCellRenderer;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 /**
@@ -68,6 +90,28 @@ public abstract class HelpAbstractOverviewView extends JPanel {
 
   private JTextField searchField;
 
+  /**
+   * Items by URL for tryToSelectURL, for the root node and for every node of a loaded sub-helpset - created on
+   * first use.
+   */
+  private final Map<HelpOverviewNode, SelectionIndex<Integer>> itemSelectionIndices = new HashMap<>();
+
+  /** Nodes of the tree by URL for tryToSelectURL if the tree is not based on items - created on first use. */
+  private SelectionIndex<HelpOverviewNode> nodeSelectionIndex;
+
+  private final List<TreeSelectionListener> selectionListeners = new ArrayList<>();
+
+  /** Incremented for every filter request, so outdated matches of branches without nodes are dropped. */
+  private volatile int filterRequest = 0;
+
+  /** Filters the tree for pendingSearchText once the user stops typing into the search field. */
+  private final Timer searchTimer;
+
+  private String pendingSearchText = "";
+
+  /** Node selected by selectWithoutNavigation, selection listeners are not notified until navigateToSelection. */
+  private Object pendingSelection;
+
   /**
    * Creates the panel with a BorderLayout and sets the activateSearch property.
    * 
@@ -76,6 +120,13 @@ public abstract class HelpAbstractOverviewView extends JPanel {
   public HelpAbstractOverviewView(final boolean activateSearch) {
     super(new BorderLayout());
     this.activateSearch = activateSearch;
+    this.searchTimer = new Timer(FilterableTree.FILTER_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        filterTree(HelpAbstractOverviewView.this.pendingSearchText, false);
+      }
+    });
+    this.searchTimer.setRepeats(false);
   }
 
   /**
@@ -96,6 +147,8 @@ public abstract class HelpAbstractOverviewView extends JPanel {
     while (root.getChildCount() > 0) {
       treeModel.removeNodeFromParent((MutableTreeNode) root.getChildAt(0));
     }
+    this.itemSelectionIndices.clear();
+    this.nodeSelectionIndex = null;
   }
 
   /**
@@ -112,7 +165,47 @@ public abstract class HelpAbstractOverviewView extends JPanel {
    * @param tsl selection listener.
    */
   public void addSelectionListener(final TreeSelectionListener tsl) {
-    getTree().addTreeSelectionListener(tsl);
+    this.selectionListeners.add(tsl);
+    getTree().addTreeSelectionListener(new TreeSelectionListener() {
+
+      @Override
+      public void valueChanged(final TreeSelectionEvent e) {
+        // the pending node stays pending, also if it is selected again after filtering the tree
+        final TreePath path = e.getPath();
+        if (path == null || path.getLastPathComponent() != HelpAbstractOverviewView.this.pendingSelection) {
+          HelpAbstractOverviewView.this.pendingSelection = null;
+          tsl.valueChanged(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Selects the given path without notifying the selection listeners, e.g. while the user types in the search
+   * field - the listeners are notified by navigateToSelection, on return in the search field or on a click on the
+   * selected node.
+   *
+   * @param path path to select.
+   */
+  protected void selectWithoutNavigation(final TreePath path) {
+    this.pendingSelection = path.getLastPathComponent();
+    getTree().setSelectionPath(path);
+    getTree().scrollPathToVisible(path);
+  }
+
+  /**
+   * Notifies the selection listeners about the node selected by selectWithoutNavigation, if it is still selected.
+   */
+  protected void navigateToSelection() {
+    final TreePath path = getTree().getSelectionPath();
+    if (this.pendingSelection == null || path == null || path.getLastPathComponent() != this.pendingSelection) {
+      return;
+    }
+    this.pendingSelection = null;
+    final TreeSelectionEvent event = new TreeSelectionEvent(getTree(), path, true, null, path);
+    for (final TreeSelectionListener tsl : new ArrayList<>(this.selectionListeners)) {
+      tsl.valueChanged(event);
+    }
   }
 
   /**
@@ -122,7 +215,22 @@ public abstract class HelpAbstractOverviewView extends JPanel {
    * @param url url.
    */
   public void tryToSelectURL(final HelpSet hs, final URL url) {
-    HelpOverviewNode matchingNode = getMatchingNode(hs, url, (HelpOverviewNode) getTree().getModel().getRoot());
+    final HelpOverviewNode root = (HelpOverviewNode) getTree().getModel().getRoot();
+    final HelpOverviewNode matchingNode;
+    if (root.getItems() != null) {
+      matchingNode = getNodeForURL(root, hs, url);
+    } else {
+      if (this.nodeSelectionIndex == null || this.nodeSelectionIndex.helpSet != hs) {
+        this.nodeSelectionIndex = new SelectionIndex<>(hs);
+        final Enumeration<?> nodes = root.preorderEnumeration();
+        nodes.nextElement();
+        while (nodes.hasMoreElements()) {
+          final HelpOverviewNode node = (HelpOverviewNode) nodes.nextElement();
+          this.nodeSelectionIndex.add(node.getTarget(), node);
+        }
+      }
+      matchingNode = this.nodeSelectionIndex.get(url);
+    }
     if (matchingNode != null) {
       final TreePath tp = new TreePath(matchingNode.getPath());
       getTree().setSelectionPath(tp);
@@ -130,22 +238,38 @@ public abstract class HelpAbstractOverviewView extends JPanel {
     }
   }
 
-  private HelpOverviewNode getMatchingNode(final HelpSet hs, final URL url, final HelpOverviewNode root) {
-    if (matches(hs, url, root)) {
-      return root;
-    }
-    // checking direct hierarchy
-    for (int i = 0; i < root.getChildCount(); i++) {
-      HelpOverviewNode node = (HelpOverviewNode) root.getChildAt(i);
-      if (matches(hs, url, node)) {
-        return node;
+  /**
+   * Returns the node for the given URL below the given node created from items - nodes might not have been created
+   * yet, so the item is looked up first. Pages of sub-helpsets are only found if the sub-helpset is already loaded.
+   */
+  private HelpOverviewNode getNodeForURL(final HelpOverviewNode itemRoot, final HelpSet hs, final URL url) {
+    final HelpOverviewItems items = itemRoot.getItems();
+    if (items != null) {
+      SelectionIndex<Integer> index = this.itemSelectionIndices.get(itemRoot);
+      if (index == null || index.helpSet != hs) {
+        index = new SelectionIndex<>(hs);
+        for (int item = HelpOverviewItems.ROOT + 1; item < items.getItemCount(); item++) {
+          index.add(items.getTarget(item), item);
+        }
+        this.itemSelectionIndices.put(itemRoot, index);
+      }
+      final Integer matchingItem = index.get(url);
+      if (matchingItem != null) {
+        return getNodeForItem(itemRoot, matchingItem);
       }
     }
-    // recursing...
-    for (int i = 0; i < root.getChildCount(); i++) {
-      HelpOverviewNode node = (HelpOverviewNode) root.getChildAt(i);
-      if (node.getChildCount() > 0) {
-        HelpOverviewNode matchingNode = getMatchingNode(hs, url, node);
+    // nodes of sub-helpsets are always the last children
+    for (int i = itemRoot.getChildCount() - 1; i >= 0; i--) {
+      final HelpOverviewNode child = (HelpOverviewNode) itemRoot.getChildAt(i);
+      if (child.getSubHelpSet() == null) {
+        break;
+      }
+      if (child.getSubHelpSet().isLoaded()) {
+        // the sub-helpset might have been loaded for a help ID, without expanding its node
+        if (child.loadChildren()) {
+          ((DefaultTreeModel) getTree().getModel()).nodeStructureChanged(child);
+        }
+        final HelpOverviewNode matchingNode = getNodeForURL(child, child.getSubHelpSet().getHelpSet(), url);
         if (matchingNode != null) {
           return matchingNode;
         }
@@ -154,16 +278,33 @@ public abstract class HelpAbstractOverviewView extends JPanel {
     return null;
   }
 
-  private static boolean matches(final HelpSet hs, final URL url, final HelpOverviewNode node) {
-    if (url.toExternalForm().indexOf(node.target) >= 0) {
-      return true;
+  /**
+   * Returns the node for the given item, creating the nodes on the path to it if necessary.
+   */
+  private HelpOverviewNode getNodeForItem(final HelpOverviewNode root, final int item) {
+    final HelpOverviewItems items = root.getItems();
+    final List<Integer> itemPath = new ArrayList<>();
+    for (int pathItem = item; pathItem != HelpOverviewItems.ROOT; pathItem = items.getParent(pathItem)) {
+      itemPath.add(0, pathItem);
     }
-    // check if mapped id would work...
-    String mappedTarget = hs.getMappedHelpURLString(node.target);
-    if (mappedTarget != null && url.toExternalForm().indexOf(mappedTarget) >= 0) {
-      return true;
+    HelpOverviewNode node = root;
+    for (final int pathItem : itemPath) {
+      if (node.loadChildren()) {
+        ((DefaultTreeModel) getTree().getModel()).nodeStructureChanged(node);
+      }
+      HelpOverviewNode child = null;
+      for (int i = 0; i < node.getChildCount() && child == null; i++) {
+        final HelpOverviewNode candidate = (HelpOverviewNode) node.getChildAt(i);
+        if (candidate.getItemIndex() == pathItem) {
+          child = candidate;
+        }
+      }
+      if (child == null) {
+        return null;
+      }
+      node = child;
     }
-    return false;
+    return node;
   }
 
   /**
@@ -173,6 +314,27 @@ public abstract class HelpAbstractOverviewView extends JPanel {
    */
   public abstract void createView(final XMLDocument xmlDoc);
 
+  /**
+   * Extension point to create the view based on the given XML source - the default implementation parses the
+   * source into an XMLDocument, override to build the view directly while parsing.
+   *
+   * @param source XML source stream.
+   * @throws Exception on error reading or parsing the source.
+   */
+  public void createView(final InputStream source) throws Exception {
+    createView(new XMLDocument(source));
+  }
+
+  /**
+   * Creates the view based on already parsed items, e.g. preloaded by the HelpSet - the default implementation
+   * creates all tree nodes at once.
+   *
+   * @param items parsed items.
+   */
+  public void createView(final HelpOverviewItems items) {
+    createView(items, false);
+  }
+
   /**
    * Creates a tree based on the given xmlDoc where it parses through all tags specified by given tag name.
    *
@@ -184,7 +346,89 @@ public abstract class HelpAbstractOverviewView extends JPanel {
     if (xmlDoc != null) {
       createNodes(xmlDoc, tagName, root);
     }
+    createView(root);
+  }
+
+  /**
+   * Creates a tree based on the given items.
+   *
+   * @param items items to show.
+   * @param lazy create child nodes only when their parent is expanded (true), or create all nodes now (false).
+   */
+  protected void createView(final HelpOverviewItems items, final boolean lazy) {
+    final HelpOverviewNode root = new HelpOverviewNode(items, HelpOverviewItems.ROOT);
+    if (lazy) {
+      // the root node is not visible, so its children are always shown
+      root.loadChildren();
+    } else {
+      root.loadAllChildren();
+    }
+    createView(root);
+  }
+
+  /**
+   * Adds a node for every given sub-helpset after the top-level nodes - the sub-helpset is only loaded when its
+   * node is expanded, its child nodes are created from the items of the sub-helpset's view with the given name.
+   *
+   * @param subHelpSets sub-helpsets.
+   * @param viewName name of the view to show for the sub-helpsets, e.g. HelpTOCView.VIEW_NAME.
+   */
+  public void addSubHelpSets(final List<SubHelpSet> subHelpSets, final String viewName) {
+    if (subHelpSets.isEmpty()) {
+      return;
+    }
+    final HelpOverviewNode root = (HelpOverviewNode) getTree().getModel().getRoot();
+    final int[] indices = new int[subHelpSets.size()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = root.getChildCount();
+      root.add(new HelpOverviewNode(subHelpSets.get(i), viewName));
+    }
+    ((DefaultTreeModel) getTree().getModel()).nodesWereInserted(root, indices);
+  }
+
+  private void createView(final HelpOverviewNode root) {
+    this.itemSelectionIndices.clear();
+    this.nodeSelectionIndex = null;
+    prepareNodes(root);
+    if (this.tree != null) {
+      // view is created again, e.g. after reloading its data - keep the tree component
+      getTree().setRoot(root);
+      return;
+    }
     this.tree = new FilterableTree(root);
+    // child nodes of lazily created nodes are created on expansion
+    getTree().addTreeWillExpandListener(new TreeWillExpandListener() {
+
+      @Override
+      public void treeWillExpand(final TreeExpansionEvent event) {
+        final Object node = event.getPath().getLastPathComponent();
+        if (!(node instanceof HelpOverviewNode)) {
+          return;
+        }
+        final HelpOverviewNode overviewNode = (HelpOverviewNode) node;
+        if (!overviewNode.childrenLoaded && overviewNode.subHelpSet != null && !overviewNode.subHelpSet.isLoaded()) {
+          loadSubHelpSetLater(overviewNode, event.getPath());
+        } else if (overviewNode.loadChildren()) {
+          ((DefaultTreeModel) getTree().getModel()).nodeStructureChanged(overviewNode);
+        }
+      }
+
+      @Override
+      public void treeWillCollapse(final TreeExpansionEvent event) {
+        // nothing to do
+      }
+    });
+    // a click on a node selected without navigation does not change the selection
+    getTree().addMouseListener(new MouseAdapter() {
+
+      @Override
+      public void mouseClicked(final MouseEvent e) {
+        final TreePath path = getTree().getPathForLocation(e.getX(), e.getY());
+        if (path != null && path.getLastPathComponent() == HelpAbstractOverviewView.this.pendingSelection) {
+          navigateToSelection();
+        }
+      }
+    });
     getTree().setCellRenderer(createTreeCellRenderer());
     add(new JScrollPane(getTree()), BorderLayout.CENTER);
     getTree().setRootVisible(false);
@@ -198,19 +442,208 @@ public abstract class HelpAbstractOverviewView extends JPanel {
         public void keyPressed(final KeyEvent kev) {
           if (kev.getKeyCode() == KeyEvent.VK_ENTER) {
             doSearch(HelpAbstractOverviewView.this.searchField.getText());
+            navigateToSelection();
           }
         }
       });
+      this.searchField.getDocument().addDocumentListener(new DocumentListener() {
+
+        @Override
+        public void insertUpdate(final DocumentEvent e) {
+          searchTextChanged(HelpAbstractOverviewView.this.searchField.getText());
+        }
+
+        @Override
+        public void removeUpdate(final DocumentEvent e) {
+          searchTextChanged(HelpAbstractOverviewView.this.searchField.getText());
+        }
+
+        @Override
+        public void changedUpdate(final DocumentEvent e) {
+          // attribute changes only
+        }
+      });
     }
   }
 
+  /**
+   * Loads the sub-helpset of the given node in the background - loading parses the sub-helpset and must not be done
+   * on the EDT. A placeholder child is shown meanwhile, the child nodes are created when the sub-helpset is loaded.
+   */
+  private void loadSubHelpSetLater(final HelpOverviewNode node, final TreePath path) {
+    if (node.getChildCount() > 0) {
+      // placeholder already shown, the sub-helpset is being loaded
+      return;
+    }
+    final DefaultTreeModel model = (DefaultTreeModel) getTree().getModel();
+    final HelpOverviewNode placeholder = new HelpOverviewNode((String) null, ResourceManager.getText("loading"));
+    node.add(placeholder);
+    model.nodeStructureChanged(node);
+    final SubHelpSet subHelpSet = node.subHelpSet;
+    new SwingWorker<HelpSet, Void>() {
+
+      @Override
+      protected HelpSet doInBackground() {
+        return subHelpSet.getHelpSet();
+      }
+
+      @Override
+      protected void done() {
+        // the child nodes might have been created in the meantime, e.g. by filtering
+        if (placeholder.getParent() == node) {
+          node.remove(placeholder);
+        }
+        node.loadChildren();
+        model.nodeStructureChanged(node);
+        if (model.getRoot() == path.getPathComponent(0)) {
+          getTree().expandPath(path);
+        }
+      }
+    }.execute();
+  }
+
+  /**
+   * Extension point called with the root node of a newly created tree before it is shown, e.g. to sort the nodes -
+   * the default implementation does nothing.
+   *
+   * @param root root node.
+   */
+  protected void prepareNodes(final HelpOverviewNode root) {
+    // nothing to do
+  }
+
+  /**
+   * Extension point called whenever the text in the search field changes - the default implementation filters the
+   * tree as soon as the user stops typing for a moment, the return key filters immediately.
+   *
+   * @param searchText current text of search field.
+   */
+  protected void searchTextChanged(final String searchText) {
+    // running matches are outdated now
+    this.filterRequest++;
+    this.pendingSearchText = searchText;
+    this.searchTimer.restart();
+  }
+
+  /**
+   * Returns the current text of the search field.
+   *
+   * @return search text, empty if there is no search field.
+   */
+  protected String getSearchText() {
+    return this.searchField == null ? "" : this.searchField.getText();
+  }
+
   /**
    * Starts the search for the given text.
    * 
    * @param searchText text to search for.
    */
   public void doSearch(final String searchText) {
-    getTree().filterTree(searchText, false, false);
+    this.searchTimer.stop();
+    filterTree(searchText, true);
+  }
+
+  /**
+   * Filters the tree for the given text. Branches without nodes yet are matched on their items in the background
+   * first, loading sub-helpsets as needed - only the nodes leading to matches are created, then the tree is
+   * filtered.
+   */
+  private void filterTree(final String searchText, final boolean immediately) {
+    final int request = ++this.filterRequest;
+    final Object root = getTree().getModel().getRoot();
+    final List<HelpOverviewNode> unloadedNodes = new ArrayList<>();
+    if (searchText != null && !searchText.isEmpty() && root instanceof HelpOverviewNode) {
+      collectUnloadedNodes((HelpOverviewNode) root, unloadedNodes);
+    }
+    if (unloadedNodes.isEmpty()) {
+      applyFilter(searchText, immediately);
+      return;
+    }
+    // the branches are taken from the nodes here, the nodes must only be accessed on the event dispatch thread
+    final List<HelpOverviewItems> itemsToMatch = new ArrayList<>();
+    final List<SubHelpSet> subHelpSetsToMatch = new ArrayList<>();
+    final List<String> viewNames = new ArrayList<>();
+    for (final HelpOverviewNode node : unloadedNodes) {
+      if (node.subHelpSet != null) {
+        subHelpSetsToMatch.add(node.subHelpSet);
+        viewNames.add(node.viewName);
+      } else {
+        itemsToMatch.add(node.items);
+      }
+    }
+    final String needle = HelpOverviewItems.fold(searchText);
+    new SwingWorker<BranchMatches, Void>() {
+
+      @Override
+      protected BranchMatches doInBackground() {
+        final BranchMatches matches = new BranchMatches(needle, request);
+        for (int i = 0; i < itemsToMatch.size() && !matches.isOutdated(); i++) {
+          matches.matchItems(itemsToMatch.get(i));
+        }
+        for (int i = 0; i < subHelpSetsToMatch.size() && !matches.isOutdated(); i++) {
+          matches.matchSubHelpSet(subHelpSetsToMatch.get(i), viewNames.get(i));
+        }
+        return matches;
+      }
+
+      @Override
+      protected void done() {
+        if (request != HelpAbstractOverviewView.this.filterRequest || getTree().getModel().getRoot() != root) {
+          return;
+        }
+        try {
+          final BranchMatches matches = get();
+          for (final HelpOverviewNode node : unloadedNodes) {
+            loadNodesWithMatches(node, matches);
+          }
+          applyFilter(searchText, immediately);
+        } catch (final InterruptedException | ExecutionException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }.execute();
+  }
+
+  private void applyFilter(final String searchText, final boolean immediately) {
+    if (immediately) {
+      getTree().filterTree(searchText, false, false);
+    } else {
+      // the user has stopped typing already
+      getTree().filterTreeInBackground(searchText, false, false);
+    }
+  }
+
+  /**
+   * Collects the nodes below the given node whose child nodes have not been created yet.
+   */
+  private static void collectUnloadedNodes(final HelpOverviewNode node, final List<HelpOverviewNode> unloadedNodes) {
+    if (!node.childrenLoaded) {
+      unloadedNodes.add(node);
+      return;
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectUnloadedNodes((HelpOverviewNode) node.getChildAt(i), unloadedNodes);
+    }
+  }
+
+  /**
+   * Creates the child nodes of the given node and its descendants, as far as they lead to matches - and those of
+   * matching nodes, so their children are filtered when the matching nodes are expanded.
+   */
+  private static void loadNodesWithMatches(final HelpOverviewNode node, final BranchMatches matches) {
+    if (!node.childrenLoaded) {
+      final boolean containsMatch = node.subHelpSet != null
+          ? matches.subHelpSetsWithMatches.contains(node.subHelpSet)
+          : matches.containsMatch(node.items, node.itemIndex);
+      if (!containsMatch && !node.getFilterLabel(false).contains(matches.needle)) {
+        return;
+      }
+      node.loadChildren();
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      loadNodesWithMatches((HelpOverviewNode) node.getChildAt(i), matches);
+    }
   }
 
   /**
@@ -223,20 +656,12 @@ public abstract class HelpAbstractOverviewView extends JPanel {
   }
 
   /**
-   * Expands the tree so that the given node is visible.
+   * Expands the given node and all nodes below it that are not filtered out.
    *
    * @param treeNodeToExpand node to make visible.
    */
   public void expandTreeNode(final DefaultMutableTreeNode treeNodeToExpand) {
-    TreePath treePath = new TreePath(treeNodeToExpand.getPath());
-    getTree().expandPath(treePath);
-    getTree().expandRow(getTree().getRowForPath(treePath));
-    if (treeNodeToExpand.getChildCount() > 0) {
-      for (int i = 0; i < treeNodeToExpand.getChildCount(); i++) {
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) treeNodeToExpand.getChildAt(i);
-        expandTreeNode(node);
-      }
-    }
+    getTree().expandAll(new TreePath(treeNodeToExpand.getPath()));
   }
 
   private static void createNodes(final XMLDocument toc, final String tocTagPath, HelpOverviewNode root) {
@@ -271,22 +696,267 @@ public abstract class HelpAbstractOverviewView extends JPanel {
 
     private String text;
 
+    private HelpOverviewItems items;
+
+    private final int itemIndex;
+
+    private final SubHelpSet subHelpSet;
+
+    private final String viewName;
+
+    private final HelpSet helpSet;
+
+    private boolean childrenLoaded;
+
     public HelpOverviewNode(final String target, final String text) {
+      this(target, text, null);
+    }
+
+    /**
+     * Creates a new node for the given target of the given helpset.
+     *
+     * @param target help ID.
+     * @param text text of node.
+     * @param helpSet helpset mapping the target, null for the helpset shown.
+     */
+    public HelpOverviewNode(final String target, final String text, final HelpSet helpSet) {
       super(text);
       this.target = target;
       this.text = text;
+      this.items = null;
+      this.itemIndex = HelpOverviewItems.NONE;
+      this.subHelpSet = null;
+      this.viewName = null;
+      this.helpSet = helpSet;
+      this.childrenLoaded = true;
+    }
+
+    /**
+     * Creates a new node for the given item - its child nodes are only created by loadChildren.
+     *
+     * @param items items.
+     * @param itemIndex index of item represented by this node.
+     */
+    public HelpOverviewNode(final HelpOverviewItems items, final int itemIndex) {
+      this(items, itemIndex, null);
+    }
+
+    /**
+     * Creates a new node for the given item of the given helpset - its child nodes are only created by loadChildren.
+     *
+     * @param items items.
+     * @param itemIndex index of item represented by this node.
+     * @param helpSet helpset the items belong to, null for the helpset shown.
+     */
+    public HelpOverviewNode(final HelpOverviewItems items, final int itemIndex, final HelpSet helpSet) {
+      super(items.getText(itemIndex));
+      this.target = items.getTarget(itemIndex);
+      this.text = items.getText(itemIndex);
+      this.items = items;
+      this.itemIndex = itemIndex;
+      this.subHelpSet = null;
+      this.viewName = null;
+      this.helpSet = helpSet;
+      this.childrenLoaded = false;
+    }
+
+    /**
+     * Creates a new node for the given sub-helpset - the sub-helpset is only loaded by loadChildren, the child nodes
+     * are then created from the items of its view with the given name.
+     *
+     * @param subHelpSet sub-helpset.
+     * @param viewName name of view to show for the sub-helpset.
+     */
+    public HelpOverviewNode(final SubHelpSet subHelpSet, final String viewName) {
+      super(subHelpSet.getTitle());
+      this.target = null;
+      this.text = subHelpSet.getTitle();
+      this.items = null;
+      this.itemIndex = HelpOverviewItems.ROOT;
+      this.subHelpSet = subHelpSet;
+      this.viewName = viewName;
+      this.helpSet = null;
+      this.childrenLoaded = false;
     }
 
     public String getTarget() {
       return this.target;
     }
 
+    /**
+     * Returns the helpset mapping the target of this node.
+     *
+     * @return helpset, null for the helpset shown.
+     */
+    public HelpSet getHelpSet() {
+      return this.helpSet;
+    }
+
+    /**
+     * Returns the items this node was created from.
+     *
+     * @return items, or null if this node was not created from items.
+     */
+    public HelpOverviewItems getItems() {
+      return this.items;
+    }
+
+    /**
+     * Returns the index of the item represented by this node.
+     *
+     * @return item index, or HelpOverviewItems.NONE if this node was not created from items.
+     */
+    public int getItemIndex() {
+      return this.itemIndex;
+    }
+
+    /**
+     * Returns the sub-helpset represented by this node.
+     *
+     * @return sub-helpset, or null if this node does not represent a sub-helpset.
+     */
+    public SubHelpSet getSubHelpSet() {
+      return this.subHelpSet;
+    }
+
+    /**
+     * Creates the child nodes of this node from its item's children, if not done yet.
+     *
+     * @return true if child nodes have been created.
+     */
+    public boolean loadChildren() {
+      if (this.childrenLoaded) {
+        return false;
+      }
+      this.childrenLoaded = true;
+      List<SubHelpSet> nestedSubHelpSets = Collections.emptyList();
+      HelpSet itemHelpSet = this.helpSet;
+      if (this.subHelpSet != null) {
+        final HelpSet loadedHelpSet = this.subHelpSet.getHelpSet();
+        if (loadedHelpSet != null) {
+          this.items = loadedHelpSet.getOverviewItems(this.viewName);
+          nestedSubHelpSets = loadedHelpSet.getSubHelpSets();
+          itemHelpSet = loadedHelpSet;
+        }
+      }
+      if (this.items != null) {
+        for (int item = this.items.getFirstChild(this.itemIndex); item != HelpOverviewItems.NONE; item = this.items.getNextSibling(item)) {
+          add(new HelpOverviewNode(this.items, item, itemHelpSet));
+        }
+      }
+      for (final SubHelpSet nestedSubHelpSet : nestedSubHelpSets) {
+        add(new HelpOverviewNode(nestedSubHelpSet, this.viewName));
+      }
+      return getChildCount() > 0;
+    }
+
+    /**
+     * Creates all descendant nodes of this node that have not been created yet.
+     */
+    public void loadAllChildren() {
+      loadChildren();
+      for (int i = 0; i < getChildCount(); i++) {
+        ((HelpOverviewNode) getChildAt(i)).loadAllChildren();
+      }
+    }
+
+    @Override
+    public boolean isLeaf() {
+      if (!this.childrenLoaded) {
+        // the content of a sub-helpset is unknown until it is loaded
+        return this.subHelpSet == null && this.items.getFirstChild(this.itemIndex) == HelpOverviewItems.NONE;
+      }
+      return super.isLeaf();
+    }
+
     @Override
     public String toString() {
       return this.text;
     }
   }
 
+  /**
+   * Result of matching the items of branches without nodes against a filter text - for every item, if it or one of
+   * its descendants matches, and the sub-helpsets containing matches.
+   */
+  private class BranchMatches {
+
+    private final String needle;
+
+    private final int request;
+
+    private final Map<HelpOverviewItems, boolean[]> itemMatches = new IdentityHashMap<>();
+
+    private final Set<SubHelpSet> subHelpSetsWithMatches = new HashSet<>();
+
+    public BranchMatches(final String needle, final int request) {
+      this.needle = needle;
+      this.request = request;
+    }
+
+    /**
+     * Returns if a newer filter request has been made, so the matches are not needed anymore.
+     *
+     * @return true if outdated.
+     */
+    public boolean isOutdated() {
+      return this.request != HelpAbstractOverviewView.this.filterRequest;
+    }
+
+    /**
+     * Matches the given items, if not done yet - stops early, returning false, if the matches are outdated.
+     *
+     * @return true if any item matches.
+     */
+    public boolean matchItems(final HelpOverviewItems items) {
+      boolean[] matches = this.itemMatches.get(items);
+      if (matches == null) {
+        matches = new boolean[items.getItemCount()];
+        // children always follow their parent, so a backward pass marks all ancestors of matches
+        for (int item = items.getItemCount() - 1; item > HelpOverviewItems.ROOT; item--) {
+          if ((item & 0xfff) == 0 && isOutdated()) {
+            return false;
+          }
+          if (matches[item] || items.textContains(item, this.needle)) {
+            matches[item] = true;
+            matches[items.getParent(item)] = true;
+          }
+        }
+        this.itemMatches.put(items, matches);
+      }
+      return matches[HelpOverviewItems.ROOT];
+    }
+
+    /**
+     * Loads the given sub-helpset and matches its items and nested sub-helpsets.
+     *
+     * @return true if the sub-helpset contains matches.
+     */
+    public boolean matchSubHelpSet(final SubHelpSet subHelpSet, final String viewName) {
+      final HelpSet loadedHelpSet = subHelpSet.getHelpSet();
+      if (loadedHelpSet == null) {
+        return false;
+      }
+      final HelpOverviewItems items = loadedHelpSet.getOverviewItems(viewName);
+      boolean found = items != null && matchItems(items);
+      for (final SubHelpSet nestedSubHelpSet : loadedHelpSet.getSubHelpSets()) {
+        // the node of a nested sub-helpset shows its title
+        if (matchSubHelpSet(nestedSubHelpSet, viewName) || HelpOverviewItems.fold(nestedSubHelpSet.getTitle()).contains(this.needle)) {
+          found = true;
+        }
+      }
+      if (found) {
+        this.subHelpSetsWithMatches.add(subHelpSet);
+      }
+      return found;
+    }
+
+    public boolean containsMatch(final HelpOverviewItems items, final int item) {
+      final boolean[] matches = this.itemMatches.get(items);
+      return matches != null && matches[item];
+    }
+  }
+
   /**
    * Tree renderer for overview trees; currently only the default renderer.
    */
@@ -306,4 +976,69 @@ public abstract class HelpAbstractOverviewView extends JPanel {
     }
 
   }
-}
\ No newline at end of file
+
+  /**
+   * Values (items or nodes) of a tree by the URL of their target. A page URL with reference only matches values
+   * with the same reference, a page URL without reference matches the first value for the page - preferably one
+   * whose target points to the top of the page.
+   */
+  private static class SelectionIndex<T> {
+
+    private final HelpSet helpSet;
+
+    private final Map<String, T> values = new HashMap<>();
+
+    /** Page URLs whose value has a target with reference, to be replaced by a value for the top of the page. */
+    private final Set<String> pagesWithRef = new HashSet<>();
+
+    /** URLs of pages by their name in the map, only used while adding values. */
+    private final Map<String, String> pageKeys = new HashMap<>();
+
+    public SelectionIndex(final HelpSet helpSet) {
+      this.helpSet = helpSet;
+    }
+
+    public void add(final String target, final T value) {
+      // only the map of the helpset itself, targets of the items are never mapped by sub-helpsets
+      final String location = target == null ? null : this.helpSet.getHelpMapper().getURL(target);
+      if (location == null) {
+        return;
+      }
+      final int indexOfHash = location.indexOf('#');
+      final String pageName = indexOfHash < 0 ? location : location.substring(0, indexOfHash);
+      String pageKey = this.pageKeys.get(pageName);
+      if (pageKey == null) {
+        final URL pageURL = this.helpSet.getHelpURL(location);
+        if (pageURL == null) {
+          return;
+        }
+        pageKey = getKey(pageURL);
+        this.pageKeys.put(pageName, pageKey);
+      }
+      if (indexOfHash >= 0) {
+        final String key = pageKey + location.substring(indexOfHash);
+        if (!this.values.containsKey(key)) {
+          this.values.put(key, value);
+        }
+        if (!this.values.containsKey(pageKey)) {
+          this.values.put(pageKey, value);
+          this.pagesWithRef.add(pageKey);
+        }
+      } else if (!this.values.containsKey(pageKey) || this.pagesWithRef.remove(pageKey)) {
+        this.values.put(pageKey, value);
+      }
+    }
+
+    public T get(final URL url) {
+      final String key = url.toExternalForm();
+      final T value = this.values.get(key);
+      return value != null ? value : this.values.get(getKey(url));
+    }
+
+    private static String getKey(final URL url) {
+      final String externalForm = url.toExternalForm();
+      final int indexOfHash = externalForm.indexOf('#');
+      return indexOfHash < 0 ? externalForm : externalForm.substring(0, indexOfHash);
+    }
+  }
+}
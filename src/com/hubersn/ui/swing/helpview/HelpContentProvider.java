@@ -0,0 +1,70 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Source of the content of a helpset - the helpset file itself, its map, view data, pages and images, all addressed
+ * by paths relative to the root of the helpset.
+ */
+public interface HelpContentProvider {
+
+  /**
+   * Returns a name identifying this provider and its content location, e.g. to name snapshot files.
+   *
+   * @return name of provider.
+   */
+  String getName();
+
+  /**
+   * Returns the URL of the resource with the given path, to be shown in a content view - relative URLs in the
+   * content must be resolvable against it.
+   *
+   * @param path path relative to the helpset root.
+   * @return URL, or null if there is no such resource.
+   */
+  URL getURL(String path);
+
+  /**
+   * Opens the resource with the given path for reading.
+   *
+   * @param path path relative to the helpset root.
+   * @return input stream, or null if there is no such resource.
+   * @throws IOException on error opening an existing resource.
+   */
+  InputStream getInputStream(String path) throws IOException;
+}
@@ -34,11 +34,18 @@ package com.hubersn.ui.swing.helpview;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
@@ -49,18 +56,19 @@ import javax.swing.Action;
 import javax.swing.JEditorPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 import javax.swing.event.HyperlinkEvent;
 import javax.swing.event.HyperlinkEvent.EventType;
 import javax.swing.event.HyperlinkListener;
-import javax.swing.text.AbstractDocument;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Document;
 import javax.swing.text.Element;
 import javax.swing.text.Highlighter;
-import javax.swing.text.Highlighter.Highlight;
 import javax.swing.text.StyleConstants;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
 import javax.swing.text.html.HTML;
 import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
@@ -75,6 +83,9 @@ public class HelpContentView extends JPanel {
   /** Property name to signal the change of the shown URL. */
   public static final String PAGE_URL_CHANGED_PROPERTY = "HELP_CONTENT_VIEW_PAGE_URL_CHANGED_PROPERTY";
 
+  /** Key stroke to open the find bar. */
+  public static final KeyStroke FIND_KEY_STROKE = KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK);
+
   private static final String HTML_MIME_TYPE = "text/html";
 
   private JEditorPane contentView;
@@ -85,24 +96,58 @@ public class HelpContentView extends JPanel {
 
   private AbstractAction nextPageAction;
 
+  private JScrollPane scrollPane;
+
   private PageHistory pageHistory;
 
-  private URL lastPage = null;
+  private final HelpDocumentCache documentCache;
+
+  private final List<HistoryHighlight> activeHighlights = new ArrayList<>();
+
+  private final List<Object> activeHighlightTags = new ArrayList<>();
 
-  /** Flag to signal to ignore that next "setPage" should not manipulate page history. */
-  private boolean ignoreNextAdd = false;
+  private HelpFindBar findBar;
+
+  private AbstractAction findAction;
+
+  private URL lastPage = null;
 
   /**
    * Creates a new instance of HelpContentView, including HTML-capable JEditorPane.
    */
   public HelpContentView() {
+    this(new HelpDocumentCache());
+  }
+
+  /**
+   * Creates a new instance of HelpContentView that uses the given document cache, e.g. shared with other content
+   * views showing the same helpset.
+   *
+   * @param documentCache cache for loaded documents.
+   */
+  public HelpContentView(final HelpDocumentCache documentCache) {
     super(new BorderLayout());
     this.pageHistory = new PageHistory();
+    this.documentCache = documentCache;
     this.contentView = new JEditorPane();
     this.contentView.setEditable(false);
     this.contentView.setEditorKitForContentType(HTML_MIME_TYPE, new SyncHTMLEditorKit());
     this.contentView.setContentType(HTML_MIME_TYPE);
-    add(new JScrollPane(this.contentView), BorderLayout.CENTER);
+    this.scrollPane = new JScrollPane(this.contentView);
+    add(this.scrollPane, BorderLayout.CENTER);
+    this.findBar = new HelpFindBar(this.contentView);
+    add(this.findBar, BorderLayout.SOUTH);
+    this.findAction = new AbstractAction() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        HelpContentView.this.findBar.open();
+      }
+    };
+    getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(FIND_KEY_STROKE, "find");
+    getActionMap().put("find", this.findAction);
     this.contentView.addHyperlinkListener(new HyperlinkListener() {
 
       @Override
@@ -125,9 +170,8 @@ public class HelpContentView extends JPanel {
       @Override
       public void actionPerformed(ActionEvent e) {
         try {
-          final URL nextPage = HelpContentView.this.pageHistory.nextFromHistory();
-          HelpContentView.this.ignoreNextAdd = true;
-          setPageInternal(nextPage);
+          rememberPageState();
+          showHistoryEntry(HelpContentView.this.pageHistory.nextFromHistory());
         } catch (IOException ex) {
           // Nothing we could possibly do, this comes from interpreting URLs from given HTML.
           ex.printStackTrace();
@@ -143,9 +187,8 @@ public class HelpContentView extends JPanel {
       @Override
       public void actionPerformed(ActionEvent e) {
         try {
-          final URL previousPage = HelpContentView.this.pageHistory.previousFromHistory();
-          HelpContentView.this.ignoreNextAdd = true;
-          setPageInternal(previousPage);
+          rememberPageState();
+          showHistoryEntry(HelpContentView.this.pageHistory.previousFromHistory());
         } catch (IOException ex) {
           // Nothing we could possibly do, this comes from interpreting URLs from given HTML.
           ex.printStackTrace();
@@ -175,6 +218,15 @@ public class HelpContentView extends JPanel {
     return this.nextPageAction;
   }
 
+  /**
+   * Returns the action to open the find bar for searching the current page.
+   *
+   * @return action to open the find bar.
+   */
+  public Action getFindAction() {
+    return this.findAction;
+  }
+
   private void enableNavigationActions() {
     this.previousPageAction.setEnabled(this.pageHistory.isPreviousFromHistoryAvailable());
     this.nextPageAction.setEnabled(this.pageHistory.isNextFromHistoryAvailable());
@@ -206,11 +258,75 @@ public class HelpContentView extends JPanel {
    */
   public void setPage(final URL url) throws IOException {
     if (url != null) {
+      rememberPageState();
       setPageInternal(url);
-      if (!this.ignoreNextAdd) {
-        this.pageHistory.addPageToHistory(url);
+      this.pageHistory.addPageToHistory(url);
+    }
+    enableNavigationActions();
+  }
+
+  /**
+   * Returns the URL of the shown page.
+   *
+   * @return URL of page, null if no page is shown.
+   */
+  public URL getPageURL() {
+    return this.lastPage;
+  }
+
+  /**
+   * Loads the shown page again, e.g. because it has been changed - the scroll position is kept.
+   *
+   * @throws IOException on connection error.
+   */
+  public void reloadPage() throws IOException {
+    if (this.lastPage == null) {
+      return;
+    }
+    final Point scrollPosition = this.scrollPane.getViewport().getViewPosition();
+    this.documentCache.remove(this.lastPage);
+    // JEditorPane does not load a page again if its URL has not changed
+    this.contentView.getDocument().putProperty(Document.StreamDescriptionProperty, null);
+    setPageInternal(this.lastPage);
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        HelpContentView.this.scrollPane.getViewport().setViewPosition(scrollPosition);
       }
-      this.ignoreNextAdd = false;
+    });
+  }
+
+  /**
+   * Writes the page history including scroll positions and highlights to the given stream, e.g. to restore the
+   * session with restoreHistory when the viewer is opened again.
+   *
+   * @param os target stream.
+   * @throws IOException on error.
+   */
+  public void saveHistory(final OutputStream os) throws IOException {
+    rememberPageState();
+    final ObjectOutputStream oos = new ObjectOutputStream(os);
+    oos.writeObject(this.pageHistory);
+    oos.flush();
+  }
+
+  /**
+   * Replaces the page history with the one read from the given stream (written by saveHistory) and shows its
+   * current page - other pages of the history are only loaded when navigated to.
+   *
+   * @param is source stream.
+   * @throws IOException on error, e.g. if the stream does not contain a page history.
+   */
+  public void restoreHistory(final InputStream is) throws IOException {
+    final PageHistory restoredHistory;
+    try {
+      restoredHistory = (PageHistory) new ObjectInputStream(is).readObject();
+    } catch (final ClassNotFoundException | ClassCastException ex) {
+      throw new IOException("No valid page history", ex);
+    }
+    this.pageHistory = restoredHistory;
+    final HistoryEntry current = this.pageHistory.getCurrentEntry();
+    if (current != null) {
+      showHistoryEntry(current);
     }
     enableNavigationActions();
   }
@@ -234,7 +350,12 @@ public class HelpContentView extends JPanel {
    * Remove possibly existing highlights in this view.
    */
   public void clearHighlights() {
-    this.contentView.getHighlighter().removeAllHighlights();
+    final Highlighter highlighter = this.contentView.getHighlighter();
+    for (final Object tag : this.activeHighlightTags) {
+      highlighter.removeHighlight(tag);
+    }
+    this.activeHighlightTags.clear();
+    this.activeHighlights.clear();
   }
 
   /**
@@ -248,7 +369,8 @@ public class HelpContentView extends JPanel {
     final Highlighter highlighter = this.contentView.getHighlighter();
     final DefaultHighlighter.DefaultHighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(highlightColour);
     try {
-      highlighter.addHighlight(startOffset, startOffset + length, painter);
+      this.activeHighlightTags.add(highlighter.addHighlight(startOffset, startOffset + length, painter));
+      this.activeHighlights.add(new HistoryHighlight(startOffset, length, highlightColour));
     } catch (BadLocationException ex) {
       // internal JEditorPane error, never seen...
       ex.printStackTrace();
@@ -274,29 +396,135 @@ public class HelpContentView extends JPanel {
 
   private void setPageInternal(final URL url) throws IOException {
     if (url != null) {
-      this.contentView.getHighlighter().removeAllHighlights();
-      this.contentView.setPage(url);
+      clearHighlights();
+      Document document = this.documentCache.get(url);
+      if (document == null) {
+        document = loadPrecompiledDocument(url);
+        if (document == null) {
+          // JEditorPane cannot read compressed pages
+          document = HelpDocument.loadCompressed(url);
+        }
+        if (document != null) {
+          this.documentCache.put(url, document);
+        }
+      }
+      if (document == null) {
+        this.contentView.setPage(url);
+        this.documentCache.put(url, this.contentView.getDocument());
+      } else {
+        if (document != this.contentView.getDocument()) {
+          this.contentView.setDocument(document);
+        }
+        if (url.getRef() != null) {
+          // the history entry of the page is not known yet, it keeps the reference of its URL anyway
+          scrollToAnchorLater(url.getRef());
+        } else {
+          this.contentView.scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+        }
+      }
       this.pcs.firePropertyChange(PAGE_URL_CHANGED_PROPERTY, this.lastPage, url);
       this.lastPage = url;
     }
     enableNavigationActions();
   }
 
+  /**
+   * Returns the document filled from the precompiled form of the page with the given URL, or null if there is none.
+   */
+  private Document loadPrecompiledDocument(final URL url) {
+    final Document doc = this.contentView.getEditorKit().createDefaultDocument();
+    if (doc instanceof HelpDocument) {
+      try {
+        if (PrecompiledHelpPage.load(url, (HelpDocument) doc)) {
+          return doc;
+        }
+      } catch (final IOException ex) {
+        System.err.println("Cannot use precompiled page for " + url + ", parsing HTML instead: " + ex.getMessage());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores scroll position and highlights of the shown page in its history entry.
+   */
+  private void rememberPageState() {
+    final HistoryEntry current = this.pageHistory.getCurrentEntry();
+    if (current != null) {
+      this.pageHistory.updateEntry(current, this.scrollPane.getViewport().getViewPosition(), this.activeHighlights);
+    }
+  }
+
+  private void showHistoryEntry(final HistoryEntry entry) throws IOException {
+    if (entry == null) {
+      return;
+    }
+    setPageInternal(entry.url);
+    for (final HistoryHighlight highlight : entry.highlights) {
+      addHighlight(highlight.startOffset, highlight.length, highlight.colour);
+    }
+    final Point scrollPosition = entry.scrollPosition;
+    if (scrollPosition != null) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          HelpContentView.this.scrollPane.getViewport().setViewPosition(scrollPosition);
+        }
+      });
+    } else {
+      scrollToAnchorLater(entry.reference);
+    }
+  }
+
   /**
    * Scrolls the current content view to the given reference.
    *
    * @param reference reference to scroll to.
    */
   public void scrollToReference(final String reference) {
+    if (reference != null && !reference.equals("")) {
+      final HistoryEntry current = this.pageHistory.getCurrentEntry();
+      if (current != null && this.lastPage != null && current.url.sameFile(this.lastPage)) {
+        current.reference = reference;
+      }
+      scrollToAnchorLater(reference);
+    }
+  }
+
+  /**
+   * Scrolls to the given reference after the shown document has been laid out, without changing the history.
+   */
+  private void scrollToAnchorLater(final String reference) {
     if (reference != null && !reference.equals("")) {
       SwingUtilities.invokeLater(new Runnable() {
         public void run() {
-          HelpContentView.this.contentView.scrollToReference(reference);
+          scrollToAnchor(reference);
         }
       });
     }
   }
 
+  private void scrollToAnchor(final String reference) {
+    final Document doc = this.contentView.getDocument();
+    if (!(doc instanceof HelpDocument)) {
+      this.contentView.scrollToReference(reference);
+      return;
+    }
+    final int offset = ((HelpDocument) doc).getAnchorOffset(reference);
+    if (offset >= 0) {
+      try {
+        final Rectangle r = this.contentView.modelToView(offset);
+        if (r != null) {
+          // show the anchor at the top of the visible area, like JEditorPane.scrollToReference does
+          r.height = this.contentView.getVisibleRect().height;
+          this.contentView.scrollRectToVisible(r);
+        }
+      } catch (final BadLocationException ex) {
+        // cannot happen, anchor offsets are taken from the document
+        ex.printStackTrace();
+      }
+    }
+  }
+
   /**
    * Scrolls the current content view to the first highlight (if it exists).
    */
@@ -305,12 +533,11 @@ public class HelpContentView extends JPanel {
     if (ep.getHighlighter() != null) {
       SwingUtilities.invokeLater(new Runnable() {
         public void run() {
-          final Highlighter h =  ep.getHighlighter();
-          final Highlight[] highlights = h.getHighlights();
-          if (highlights != null && highlights.length > 0) {
-            final Highlight highlight = highlights[0];
+          // the tags returned by the highlighter are opaque, the ranges are kept separately
+          final List<HistoryHighlight> highlights = HelpContentView.this.activeHighlights;
+          if (!highlights.isEmpty()) {
             try {
-              final Rectangle scrollPoint = ep.modelToView(highlight.getStartOffset());
+              final Rectangle scrollPoint = ep.modelToView(highlights.get(0).startOffset);
               ep.scrollRectToVisible(makeRectangleBigger(scrollPoint));
             } catch (BadLocationException e) {
               // will never happen, highlight position is always inside doc.
@@ -378,69 +605,164 @@ public class HelpContentView extends JPanel {
 
   /**
    * Minimal subclass to force new documents to load synchronously to allow a scrollToReference to work always when called immediately after
-   * setPage.
+   * setPage - also provides the view factory for help specific views.
    */
   private static class SyncHTMLEditorKit extends HTMLEditorKit {
 
     private static final long serialVersionUID = 1L;
 
+    private static final ViewFactory HELP_VIEW_FACTORY = new HelpViewFactory();
+
     public SyncHTMLEditorKit() {
       super();
     }
 
+    @Override
+    public ViewFactory getViewFactory() {
+      return HELP_VIEW_FACTORY;
+    }
+
     @Override
     public Document createDefaultDocument() {
-      Document newDoc = super.createDefaultDocument();
-      if (newDoc instanceof AbstractDocument) {
-        ((AbstractDocument) newDoc).setAsynchronousLoadPriority(-1);
+      return HelpDocument.createDocument(getStyleSheet(), getParser());
+    }
+  }
+
+  /**
+   * View factory replacing the standard image view with one using the shared image cache, and the body view
+   * of very large documents with one that only lays out the visible parts.
+   */
+  private static class HelpViewFactory extends HTMLEditorKit.HTMLFactory {
+
+    @Override
+    public View create(final Element elem) {
+      final Object tag = elem.getAttributes().getAttribute(StyleConstants.NameAttribute);
+      if (tag == HTML.Tag.IMG) {
+        return new HelpImageView(elem);
+      }
+      if (tag == HTML.Tag.BODY && HelpSectionedBodyView.isSectioningUseful(elem)) {
+        return new HelpSectionedBodyView(elem);
       }
-      return newDoc;
+      return super.create(elem);
     }
   }
 
+  /**
+   * Bounded page history - limited by number of entries and estimated memory usage, oldest entries are removed first.
+   */
   private static class PageHistory implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    private static final int MAXIMUM_ENTRIES = 200;
+
+    private static final long MAXIMUM_SIZE = 1024L * 1024L;
 
     // index of last (after add) or current (after prev/next) entry
     private int index = 0;
 
-    private List<URL> urlList = new ArrayList<>();
+    private long size = 0;
+
+    private List<HistoryEntry> entries = new ArrayList<>();
 
     public void addPageToHistory(final URL url) {
       // remove items from list up to current position
-      for (int indexToDelete = this.urlList.size() - 1; indexToDelete > this.index; indexToDelete--) {
-        this.urlList.remove(indexToDelete);
+      for (int indexToDelete = this.entries.size() - 1; indexToDelete > this.index; indexToDelete--) {
+        this.size -= this.entries.remove(indexToDelete).getSize();
       }
       // check if URL to add is already at current position
-      if (this.urlList.isEmpty() || !url.toString().equals(this.urlList.get(this.urlList.size() - 1).toString())) {
-        this.urlList.add(url);
-        this.index = this.urlList.size() - 1;
+      if (this.entries.isEmpty() || !url.toString().equals(this.entries.get(this.entries.size() - 1).url.toString())) {
+        final HistoryEntry entry = new HistoryEntry(url);
+        this.entries.add(entry);
+        this.size += entry.getSize();
+        while (this.entries.size() > 1 && (this.entries.size() > MAXIMUM_ENTRIES || this.size > MAXIMUM_SIZE)) {
+          this.size -= this.entries.remove(0).getSize();
+        }
+        this.index = this.entries.size() - 1;
+      }
+    }
+
+    public void updateEntry(final HistoryEntry entry, final Point scrollPosition, final List<HistoryHighlight> highlights) {
+      this.size -= entry.getSize();
+      entry.scrollPosition = new Point(scrollPosition);
+      entry.highlights = new ArrayList<>(highlights);
+      this.size += entry.getSize();
+    }
+
+    public HistoryEntry getCurrentEntry() {
+      if (this.index < 0 || this.index >= this.entries.size()) {
+        return null;
       }
+      return this.entries.get(this.index);
     }
 
-    public URL nextFromHistory() {
+    public HistoryEntry nextFromHistory() {
       if (!isNextFromHistoryAvailable()) {
         return null;
       }
       this.index++;
-      return this.urlList.get(this.index);
+      return this.entries.get(this.index);
     }
 
-    public URL previousFromHistory() {
+    public HistoryEntry previousFromHistory() {
       if (!isPreviousFromHistoryAvailable()) {
         return null;
       }
       this.index--;
-      return this.urlList.get(this.index);
+      return this.entries.get(this.index);
     }
 
     public boolean isNextFromHistoryAvailable() {
-      return this.index < this.urlList.size() - 1;
+      return this.index < this.entries.size() - 1;
     }
 
     public boolean isPreviousFromHistoryAvailable() {
       return this.index > 0;
     }
   }
+
+  /**
+   * Page history entry - URL, reference, scroll position and highlights of a visited page.
+   */
+  private static class HistoryEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final URL url;
+
+    private String reference;
+
+    private Point scrollPosition;
+
+    private List<HistoryHighlight> highlights = new ArrayList<>();
+
+    public HistoryEntry(final URL url) {
+      this.url = url;
+      this.reference = url.getRef();
+    }
+
+    public long getSize() {
+      return 64L + 2L * this.url.toString().length() + 24L * this.highlights.size();
+    }
+  }
+
+  /**
+   * Highlight as stored in the page history.
+   */
+  private static class HistoryHighlight implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int startOffset;
+
+    private final int length;
+
+    private final Color colour;
+
+    public HistoryHighlight(final int startOffset, final int length, final Color colour) {
+      this.startOffset = startOffset;
+      this.length = length;
+      this.colour = colour;
+    }
+  }
 }
@@ -0,0 +1,326 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.ChangedCharSetException;
+import javax.swing.text.Element;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.StyleSheet;
+import javax.swing.text.html.parser.ParserDelegator;
+
+/**
+ * HTML document of a help page - can also be filled from a precompiled page (see PrecompiledHelpPage) instead of
+ * parsing HTML, and knows the offsets of its anchors.
+ */
+public class HelpDocument extends HTMLDocument {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Anchor name (from A name or any id attribute) to offset, collected on first use. */
+  private Map<String, Integer> anchors = null;
+
+  /**
+   * Creates a new instance of HelpDocument using the given style sheet.
+   *
+   * @param styles style sheet.
+   */
+  public HelpDocument(final StyleSheet styles) {
+    super(styles);
+  }
+
+  /**
+   * Creates a new empty document set up the same way HTMLEditorKit does for its documents.
+   *
+   * @param kitStyles style sheet of the editor kit.
+   * @param parser HTML parser.
+   * @return new document.
+   */
+  public static HelpDocument createDocument(final StyleSheet kitStyles, final HTMLEditorKit.Parser parser) {
+    final StyleSheet styles = new StyleSheet();
+    styles.addStyleSheet(kitStyles);
+    final HelpDocument doc = new HelpDocument(styles);
+    doc.setParser(parser);
+    doc.setAsynchronousLoadPriority(-1);
+    doc.setTokenThreshold(100);
+    return doc;
+  }
+
+  /**
+   * Loads the page with the given URL synchronously into a new document, from its precompiled form if available,
+   * otherwise by parsing the HTML, which is read from its compressed form if available. Can be called from any
+   * thread.
+   *
+   * @param url URL of page.
+   * @return loaded document.
+   * @throws IOException on error reading the page.
+   */
+  public static HelpDocument load(final URL url) throws IOException {
+    final HTMLEditorKit kit = new HTMLEditorKit();
+    HelpDocument doc = createDocument(kit.getStyleSheet(), new ParserDelegator());
+    try {
+      if (PrecompiledHelpPage.load(url, doc)) {
+        return doc;
+      }
+    } catch (final IOException ex) {
+      System.err.println("Cannot use precompiled page for " + url + ", parsing HTML instead: " + ex.getMessage());
+      doc = createDocument(kit.getStyleSheet(), new ParserDelegator());
+    }
+    final InputStream compressed = CompressedHelpPage.openStream(url);
+    if (compressed != null) {
+      // the content type of a compressed page does not tell its charset
+      return parse(kit, doc, compressed, Charset.defaultCharset(), url);
+    }
+    final URLConnection connection = url.openConnection();
+    final Charset charset = getCharset(connection.getContentType(), Charset.defaultCharset());
+    return parse(kit, doc, connection.getInputStream(), charset, url);
+  }
+
+  /**
+   * Loads the page with the given URL synchronously into a new document from its compressed form, if there is a
+   * usable one. Can be called from any thread.
+   *
+   * @param url URL of page.
+   * @return loaded document, or null if there is no compressed form of the page.
+   * @throws IOException on error reading the compressed page.
+   */
+  public static HelpDocument loadCompressed(final URL url) throws IOException {
+    final InputStream compressed = CompressedHelpPage.openStream(url);
+    if (compressed == null) {
+      return null;
+    }
+    final HTMLEditorKit kit = new HTMLEditorKit();
+    final HelpDocument doc = createDocument(kit.getStyleSheet(), new ParserDelegator());
+    // the content type of a compressed page does not tell its charset
+    return parse(kit, doc, compressed, Charset.defaultCharset(), url);
+  }
+
+  private static HelpDocument parse(final HTMLEditorKit kit,
+                                    final HelpDocument doc,
+                                    final InputStream is,
+                                    final Charset charset,
+                                    final URL url) throws IOException {
+    try {
+      read(kit, is, charset, url, doc);
+      return doc;
+    } catch (final ChangedCharSetException ex) {
+      // same as JEditorPane - read again with the charset declared in the page
+      final HelpDocument charsetDoc = createDocument(kit.getStyleSheet(), new ParserDelegator());
+      charsetDoc.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+      read(kit, CompressedHelpPage.openPageStream(url), getCharset(ex, charset), url, charsetDoc);
+      return charsetDoc;
+    }
+  }
+
+  private static void read(final HTMLEditorKit kit,
+                           final InputStream is,
+                           final Charset charset,
+                           final URL url,
+                           final HelpDocument doc) throws IOException {
+    doc.setBase(url);
+    doc.putProperty(StreamDescriptionProperty, url);
+    try (Reader r = new InputStreamReader(is, charset)) {
+      kit.read(r, doc, 0);
+    } catch (final BadLocationException ex) {
+      throw new IOException("Cannot parse " + url, ex);
+    }
+  }
+
+  /**
+   * Returns the charset declared in the given content type, e.g. "text/html; charset=UTF-8".
+   *
+   * @param contentType content type, may be null.
+   * @param defaultCharset charset to use if there is no valid charset in the content type.
+   * @return charset.
+   */
+  static Charset getCharset(final String contentType, final Charset defaultCharset) {
+    if (contentType == null) {
+      return defaultCharset;
+    }
+    final int indexOfCharset = contentType.toLowerCase().indexOf("charset=");
+    if (indexOfCharset < 0) {
+      return defaultCharset;
+    }
+    String name = contentType.substring(indexOfCharset + "charset=".length());
+    final int indexOfSemicolon = name.indexOf(';');
+    if (indexOfSemicolon >= 0) {
+      name = name.substring(0, indexOfSemicolon);
+    }
+    return getCharsetForName(name, defaultCharset);
+  }
+
+  /**
+   * Returns the charset declared by the page that caused the given exception during parsing.
+   *
+   * @param ex exception thrown by the parser.
+   * @param defaultCharset charset to use if the declared charset is invalid.
+   * @return charset.
+   */
+  static Charset getCharset(final ChangedCharSetException ex, final Charset defaultCharset) {
+    if (ex.keyEqualsCharSet()) {
+      return getCharsetForName(ex.getCharSetSpec(), defaultCharset);
+    }
+    return getCharset(ex.getCharSetSpec(), defaultCharset);
+  }
+
+  private static Charset getCharsetForName(final String name, final Charset defaultCharset) {
+    try {
+      return Charset.forName(name.trim().replace("\"", ""));
+    } catch (final IllegalArgumentException ex) {
+      return defaultCharset;
+    }
+  }
+
+  /**
+   * Returns the offset of the anchor with the given name - anchors are A elements with a name attribute as well as
+   * all elements with an id attribute. If several anchors have the same name, the first one is used.
+   *
+   * @param name anchor name.
+   * @return offset of anchor, or -1 if there is no anchor with the given name.
+   */
+  public int getAnchorOffset(final String name) {
+    final Integer offset = getAnchors().get(name);
+    return offset == null ? -1 : offset;
+  }
+
+  /**
+   * Returns the names of all anchors, see getAnchorOffset.
+   *
+   * @return anchor names.
+   */
+  public Set<String> getAnchorNames() {
+    return Collections.unmodifiableSet(getAnchors().keySet());
+  }
+
+  private synchronized Map<String, Integer> getAnchors() {
+    if (this.anchors == null) {
+      readLock();
+      try {
+        this.anchors = new HashMap<>();
+        collectAnchors(getDefaultRootElement(), this.anchors);
+      } finally {
+        readUnlock();
+      }
+    }
+    return this.anchors;
+  }
+
+  private static void collectAnchors(final Element elem, final Map<String, Integer> anchors) {
+    final AttributeSet attr = elem.getAttributes();
+    addAnchor(anchors, attr.getAttribute(HTML.Attribute.ID), elem.getStartOffset());
+    if (elem.isLeaf()) {
+      final Object anchorAttr = attr.getAttribute(HTML.Tag.A);
+      if (anchorAttr instanceof AttributeSet) {
+        addAnchor(anchors, ((AttributeSet) anchorAttr).getAttribute(HTML.Attribute.NAME), elem.getStartOffset());
+        addAnchor(anchors, ((AttributeSet) anchorAttr).getAttribute(HTML.Attribute.ID), elem.getStartOffset());
+      }
+    } else {
+      for (int i = 0; i < elem.getElementCount(); i++) {
+        collectAnchors(elem.getElement(i), anchors);
+      }
+    }
+  }
+
+  private static void addAnchor(final Map<String, Integer> anchors, final Object name, final int offset) {
+    if (name != null && !anchors.containsKey(name.toString())) {
+      anchors.put(name.toString(), offset);
+    }
+  }
+
+  @Override
+  protected void insertUpdate(final DefaultDocumentEvent chng, final AttributeSet attr) {
+    super.insertUpdate(chng, attr);
+    resetAnchors();
+  }
+
+  @Override
+  protected void postRemoveUpdate(final DefaultDocumentEvent chng) {
+    super.postRemoveUpdate(chng);
+    resetAnchors();
+  }
+
+  private synchronized void resetAnchors() {
+    this.anchors = null;
+  }
+
+  /**
+   * Replaces the content of this document with the given element structure - the first element spec is the start
+   * tag of the root element.
+   *
+   * @param data element specs.
+   * @param endAttributes attributes of the leaf holding the implicit newline at the end of the document, or null to
+   *          keep the leaf created by the document.
+   * @throws BadLocationException on invalid element structure.
+   */
+  void createFromElementSpecs(final ElementSpec[] data, final AttributeSet endAttributes) throws BadLocationException {
+    create(data);
+    final int length = getLength();
+    if (endAttributes == null || length == 0) {
+      return;
+    }
+    writeLock();
+    try {
+      // create leaves the structure of the empty document at the end, i.e. a second body holding the implicit
+      // newline - replace it by a leaf at the end of the last paragraph, just like HTMLDocument.HTMLReader does
+      final BranchElement root = (BranchElement) getDefaultRootElement();
+      final int index = root.getElementIndex(length);
+      if (index > 0 && root.getElement(index).getStartOffset() == length) {
+        root.replace(index, 1, new Element[0]);
+        Element paragraph = root;
+        while (!paragraph.getElement(paragraph.getElementIndex(length - 1)).isLeaf()) {
+          paragraph = paragraph.getElement(paragraph.getElementIndex(length - 1));
+        }
+        final BranchElement lastParagraph = (BranchElement) paragraph;
+        final Element endLeaf = createLeafElement(lastParagraph, endAttributes, length, length + 1);
+        lastParagraph.replace(lastParagraph.getElementCount(), 0, new Element[] {endLeaf});
+      }
+    } finally {
+      writeUnlock();
+    }
+  }
+}
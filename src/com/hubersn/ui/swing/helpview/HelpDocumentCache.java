@@ -0,0 +1,183 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * Least-recently-used cache of loaded help documents, bounded by number of documents and estimated memory
+ * usage - allows to show already visited pages again without loading and parsing them.
+ */
+public class HelpDocumentCache {
+
+  /** Default maximum number of cached documents. */
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 32;
+
+  /** Default maximum estimated memory usage of all cached documents in bytes. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024L * 1024L;
+
+  private static final int BYTES_PER_ELEMENT = 96;
+
+  private final int maximumEntries;
+
+  private final long maximumSize;
+
+  private long currentSize = 0;
+
+  private final Map<String, CacheEntry> documents = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates a new instance of HelpDocumentCache with default limits.
+   */
+  public HelpDocumentCache() {
+    this(DEFAULT_MAXIMUM_ENTRIES, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new instance of HelpDocumentCache with the given limits.
+   *
+   * @param maximumEntries maximum number of cached documents.
+   * @param maximumSize maximum estimated memory usage of all cached documents in bytes.
+   */
+  public HelpDocumentCache(final int maximumEntries, final long maximumSize) {
+    this.maximumEntries = maximumEntries;
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the cached document for the given URL (a reference part of the URL is ignored).
+   *
+   * @param url URL of document.
+   * @return cached document, or null if not cached.
+   */
+  public synchronized Document get(final URL url) {
+    final CacheEntry entry = this.documents.get(getKey(url));
+    return entry == null ? null : entry.document;
+  }
+
+  /**
+   * Puts the given document for the given URL into this cache, possibly removing least recently used documents.
+   *
+   * @param url URL of document.
+   * @param document document.
+   */
+  public synchronized void put(final URL url, final Document document) {
+    final CacheEntry entry = new CacheEntry(document, estimateSize(document));
+    final CacheEntry oldEntry = this.documents.put(getKey(url), entry);
+    if (oldEntry != null) {
+      this.currentSize -= oldEntry.size;
+    }
+    this.currentSize += entry.size;
+    evict();
+  }
+
+  /**
+   * Removes the document for the given URL from this cache.
+   *
+   * @param url URL of document.
+   */
+  public synchronized void remove(final URL url) {
+    final CacheEntry entry = this.documents.remove(getKey(url));
+    if (entry != null) {
+      this.currentSize -= entry.size;
+    }
+  }
+
+  /**
+   * Removes all documents from this cache.
+   */
+  public synchronized void clear() {
+    this.documents.clear();
+    this.currentSize = 0;
+  }
+
+  /**
+   * Returns the estimated memory usage of all cached documents in bytes.
+   *
+   * @return estimated memory usage.
+   */
+  public synchronized long getSize() {
+    return this.currentSize;
+  }
+
+  private void evict() {
+    final Iterator<CacheEntry> it = this.documents.values().iterator();
+    // always keep the most recently added document
+    while ((this.documents.size() > this.maximumEntries || this.currentSize > this.maximumSize) && this.documents.size() > 1) {
+      this.currentSize -= it.next().size;
+      it.remove();
+    }
+  }
+
+  private static String getKey(final URL url) {
+    final String externalForm = url.toExternalForm();
+    final int indexOfHash = externalForm.indexOf('#');
+    return indexOfHash < 0 ? externalForm : externalForm.substring(0, indexOfHash);
+  }
+
+  /**
+   * Returns the estimated memory usage of the given document in bytes.
+   *
+   * @param document document.
+   * @return estimated memory usage.
+   */
+  public static long estimateSize(final Document document) {
+    return 2L * document.getLength() + BYTES_PER_ELEMENT * countElements(document.getDefaultRootElement());
+  }
+
+  private static long countElements(final Element element) {
+    long count = 1;
+    for (int i = 0; i < element.getElementCount(); i++) {
+      count += countElements(element.getElement(i));
+    }
+    return count;
+  }
+
+  private static class CacheEntry {
+
+    private final Document document;
+
+    private final long size;
+
+    public CacheEntry(final Document document, final long size) {
+      this.document = document;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,474 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.Segment;
+
+/**
+ * Find bar for searching the text of the document currently shown in a text component - matches are refined
+ * incrementally while typing, and only the visible matches are painted.
+ */
+public class HelpFindBar extends JPanel {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Color MATCH_COLOUR = new Color(255, 240, 120);
+
+  private static final Color CURRENT_MATCH_COLOUR = new Color(235, 174, 52);
+
+  private static final int[] NO_MATCHES = new int[0];
+
+  private final JTextComponent editor;
+
+  private final JTextField findField;
+
+  private final JLabel statusLabel;
+
+  private final MatchesPainter painter = new MatchesPainter();
+
+  private Object highlightTag;
+
+  /** Folded text of the document the matches refer to. */
+  private char[] text;
+
+  private Document textDocument;
+
+  /** Queries of the current typing sequence with their matches, each query is a prefix of its successor. */
+  private final List<String> queries = new ArrayList<>();
+
+  private final List<int[]> matchSets = new ArrayList<>();
+
+  private int[] matches = NO_MATCHES;
+
+  private int matchLength = 0;
+
+  private int currentMatch = -1;
+
+  /**
+   * Creates a new, initially invisible find bar for the given text component.
+   *
+   * @param editor text component to search through.
+   */
+  public HelpFindBar(final JTextComponent editor) {
+    super(new BorderLayout());
+    this.editor = editor;
+    this.findField = new JTextField(20);
+    this.statusLabel = new JLabel();
+    final JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
+    buttonPanel.add(createButton(new AbstractAction(ResourceManager.getText("findPrevious")) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        previousMatch();
+      }
+    }));
+    buttonPanel.add(createButton(new AbstractAction(ResourceManager.getText("findNext")) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        nextMatch();
+      }
+    }));
+    buttonPanel.add(this.statusLabel);
+    add(new JLabel(ResourceManager.getText("find")), BorderLayout.WEST);
+    add(this.findField, BorderLayout.CENTER);
+    add(buttonPanel, BorderLayout.EAST);
+
+    this.findField.getDocument().addDocumentListener(new DocumentListener() {
+
+      @Override
+      public void insertUpdate(final DocumentEvent e) {
+        find();
+      }
+
+      @Override
+      public void removeUpdate(final DocumentEvent e) {
+        find();
+      }
+
+      @Override
+      public void changedUpdate(final DocumentEvent e) {
+        // attribute changes are irrelevant
+      }
+    });
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "findNext", new AbstractAction() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        nextMatch();
+      }
+    });
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, InputEvent.SHIFT_DOWN_MASK), "findPrevious", new AbstractAction() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        previousMatch();
+      }
+    });
+    bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "findClose", new AbstractAction() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        close();
+      }
+    });
+    // a new document invalidates all matches
+    editor.addPropertyChangeListener("document", new PropertyChangeListener() {
+
+      @Override
+      public void propertyChange(final PropertyChangeEvent evt) {
+        HelpFindBar.this.text = null;
+        HelpFindBar.this.textDocument = null;
+        HelpFindBar.this.queries.clear();
+        HelpFindBar.this.matchSets.clear();
+        // the highlighter keeps its highlights when the document is replaced
+        removeHighlight();
+        if (isVisible()) {
+          find();
+        }
+      }
+    });
+    setVisible(false);
+  }
+
+  private static JButton createButton(final AbstractAction action) {
+    final JButton button = new JButton(action);
+    button.setFocusable(false);
+    return button;
+  }
+
+  private void bindKey(final KeyStroke keyStroke, final String actionKey, final AbstractAction action) {
+    this.findField.getInputMap(JComponent.WHEN_FOCUSED).put(keyStroke, actionKey);
+    this.findField.getActionMap().put(actionKey, action);
+  }
+
+  /**
+   * Shows this find bar and focuses its text field.
+   */
+  public void open() {
+    setVisible(true);
+    revalidate();
+    this.findField.selectAll();
+    this.findField.requestFocusInWindow();
+    find();
+  }
+
+  /**
+   * Hides this find bar and removes the match highlights.
+   */
+  public void close() {
+    setVisible(false);
+    revalidate();
+    removeHighlight();
+    this.matches = NO_MATCHES;
+    this.currentMatch = -1;
+    this.editor.requestFocusInWindow();
+  }
+
+  /**
+   * Returns the number of matches of the current find text.
+   *
+   * @return number of matches.
+   */
+  public int getMatchCount() {
+    return this.matches.length;
+  }
+
+  /**
+   * Sets the text to find.
+   *
+   * @param findText text to find.
+   */
+  public void setFindText(final String findText) {
+    this.findField.setText(findText);
+  }
+
+  /**
+   * Moves to the next match, wrapping around at the end of the document.
+   */
+  public void nextMatch() {
+    if (this.matches.length > 0) {
+      selectMatch((this.currentMatch + 1) % this.matches.length);
+    }
+  }
+
+  /**
+   * Moves to the previous match, wrapping around at the start of the document.
+   */
+  public void previousMatch() {
+    if (this.matches.length > 0) {
+      selectMatch((this.currentMatch - 1 + this.matches.length) % this.matches.length);
+    }
+  }
+
+  private void find() {
+    final String query = fold(this.findField.getText());
+    final Document doc = this.editor.getDocument();
+    if (this.text == null || this.textDocument != doc) {
+      this.text = getFoldedText(doc);
+      this.textDocument = doc;
+      this.queries.clear();
+      this.matchSets.clear();
+    }
+    if (query.isEmpty()) {
+      this.queries.clear();
+      this.matchSets.clear();
+      this.matches = NO_MATCHES;
+    } else {
+      // forget queries that are no prefix of the new one, e.g. after deleting characters
+      while (!this.queries.isEmpty() && !query.startsWith(this.queries.get(this.queries.size() - 1))) {
+        this.queries.remove(this.queries.size() - 1);
+        this.matchSets.remove(this.matchSets.size() - 1);
+      }
+      if (!this.queries.isEmpty() && this.queries.get(this.queries.size() - 1).equals(query)) {
+        this.matches = this.matchSets.get(this.matchSets.size() - 1);
+      } else {
+        if (this.queries.isEmpty()) {
+          this.matches = findAll(this.text, query);
+        } else {
+          this.matches = refine(this.text, this.matchSets.get(this.matchSets.size() - 1), query);
+        }
+        this.queries.add(query);
+        this.matchSets.add(this.matches);
+      }
+    }
+    this.matchLength = query.length();
+    this.currentMatch = -1;
+    if (this.matches.length > 0) {
+      addHighlight();
+      selectMatch(getFirstMatchFromVisibleArea());
+    } else {
+      removeHighlight();
+      updateStatus();
+    }
+  }
+
+  private static int[] findAll(final char[] text, final String query) {
+    int[] result = new int[16];
+    int count = 0;
+    final char first = query.charAt(0);
+    final int last = text.length - query.length();
+    for (int i = 0; i <= last; i++) {
+      if (text[i] == first && regionMatches(text, i, query)) {
+        if (count == result.length) {
+          result = Arrays.copyOf(result, count * 2);
+        }
+        result[count++] = i;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static int[] refine(final char[] text, final int[] previousMatches, final String query) {
+    final int[] result = new int[previousMatches.length];
+    int count = 0;
+    for (final int match : previousMatches) {
+      if (match + query.length() <= text.length && regionMatches(text, match, query)) {
+        result[count++] = match;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static boolean regionMatches(final char[] text, final int offset, final String query) {
+    for (int i = 0; i < query.length(); i++) {
+      if (text[offset + i] != query.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String fold(final String s) {
+    final char[] chars = s.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(chars[i]);
+    }
+    return new String(chars);
+  }
+
+  private static char[] getFoldedText(final Document doc) {
+    final char[] result = new char[doc.getLength()];
+    final Segment segment = new Segment();
+    segment.setPartialReturn(true);
+    int offset = 0;
+    try {
+      while (offset < result.length) {
+        doc.getText(offset, result.length - offset, segment);
+        for (int i = 0; i < segment.count; i++) {
+          // per char folding keeps document offsets intact
+          result[offset + i] = Character.toLowerCase(segment.array[segment.offset + i]);
+        }
+        offset += segment.count;
+      }
+    } catch (final BadLocationException ex) {
+      // cannot happen, we stay inside the document
+      ex.printStackTrace();
+    }
+    return result;
+  }
+
+  private int getFirstMatchFromVisibleArea() {
+    final Rectangle visible = this.editor.getVisibleRect();
+    final int offset = visible.isEmpty() ? 0 : Math.max(0, this.editor.viewToModel(visible.getLocation()));
+    final int index = firstMatchAtOrAfter(offset);
+    return index < this.matches.length ? index : 0;
+  }
+
+  private int firstMatchAtOrAfter(final int offset) {
+    int index = Arrays.binarySearch(this.matches, offset);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index;
+  }
+
+  private void selectMatch(final int index) {
+    this.currentMatch = index;
+    updateStatus();
+    try {
+      final Rectangle r = this.editor.modelToView(this.matches[index]);
+      if (r != null) {
+        r.y = Math.max(0, r.y - 30);
+        r.height += 60;
+        this.editor.scrollRectToVisible(r);
+      }
+    } catch (final BadLocationException ex) {
+      // cannot happen, matches are taken from the document
+      ex.printStackTrace();
+    }
+    this.editor.repaint();
+  }
+
+  private void updateStatus() {
+    if (this.findField.getText().isEmpty()) {
+      this.statusLabel.setText("");
+    } else if (this.matches.length == 0) {
+      this.statusLabel.setText(ResourceManager.getText("findNoMatches"));
+    } else {
+      this.statusLabel.setText(MessageFormat.format(ResourceManager.getText("findMatchStatus"), this.currentMatch + 1, this.matches.length));
+    }
+  }
+
+  private void addHighlight() {
+    if (this.highlightTag == null) {
+      try {
+        // one highlight for all matches, the painter decides which matches are visible
+        this.highlightTag = this.editor.getHighlighter().addHighlight(0, this.editor.getDocument().getLength(), this.painter);
+      } catch (final BadLocationException ex) {
+        // cannot happen, range is the whole document
+        ex.printStackTrace();
+      }
+    }
+    this.editor.repaint();
+  }
+
+  private void removeHighlight() {
+    if (this.highlightTag != null) {
+      this.editor.getHighlighter().removeHighlight(this.highlightTag);
+      this.highlightTag = null;
+    }
+    this.editor.repaint();
+  }
+
+  /**
+   * Paints the matches inside the clip area, found by binary search.
+   */
+  private class MatchesPainter implements Highlighter.HighlightPainter {
+
+    private final DefaultHighlighter.DefaultHighlightPainter matchPainter = new DefaultHighlighter.DefaultHighlightPainter(MATCH_COLOUR);
+
+    private final DefaultHighlighter.DefaultHighlightPainter currentMatchPainter = new DefaultHighlighter.DefaultHighlightPainter(CURRENT_MATCH_COLOUR);
+
+    @Override
+    public void paint(final Graphics g, final int p0, final int p1, final Shape bounds, final JTextComponent c) {
+      final int[] visibleMatches = HelpFindBar.this.matches;
+      if (visibleMatches.length == 0) {
+        return;
+      }
+      Rectangle clip = g.getClipBounds();
+      if (clip == null) {
+        clip = c.getVisibleRect();
+      }
+      final int startOffset = Math.max(0, c.viewToModel(new Point(0, clip.y)) - HelpFindBar.this.matchLength);
+      final int endOffset = c.viewToModel(new Point(c.getWidth(), clip.y + clip.height));
+      final int length = c.getDocument().getLength();
+      for (int i = firstMatchAtOrAfter(startOffset); i < visibleMatches.length && visibleMatches[i] <= endOffset; i++) {
+        final int matchEnd = Math.min(length, visibleMatches[i] + HelpFindBar.this.matchLength);
+        final Highlighter.HighlightPainter p = i == HelpFindBar.this.currentMatch ? this.currentMatchPainter : this.matchPainter;
+        p.paint(g, visibleMatches[i], matchEnd, bounds, c);
+      }
+    }
+  }
+}
@@ -0,0 +1,413 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+
+/**
+ * Process-wide, size-bounded cache for images shown in help pages. Images are decoded in the background
+ * on first request, downscaled once if they are much larger than the display, and kept in least-recently-used
+ * order until the configured memory limit is reached.
+ */
+public class HelpImageCache {
+
+  /** Default maximum number of bytes used for decoded images. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024L * 1024L;
+
+  private static final int MAXIMUM_SIZE_ENTRIES = 4096;
+
+  private static long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+  private static long currentSize = 0;
+
+  private static final Map<String, BufferedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+
+  private static final Map<String, Dimension> sizes = new LinkedHashMap<String, Dimension>(64, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Dimension> eldest) {
+      return size() > MAXIMUM_SIZE_ENTRIES;
+    }
+  };
+
+  /** Areas to repaint once images decoded in the background are available, by image URL. */
+  private static final Map<String, Set<RepaintTarget>> pendingLoads = new HashMap<>();
+
+  /** Callbacks waiting for image sizes read in the background, by image URL. */
+  private static final Map<String, List<Runnable>> pendingSizeReads = new HashMap<>();
+
+  private static ExecutorService loader;
+
+  private static Dimension displayLimit;
+
+  private HelpImageCache() {
+    // purely static, no instance allowed
+  }
+
+  /**
+   * Sets the maximum number of bytes used for decoded images - least recently used images are removed first.
+   *
+   * @param maximumBytes maximum number of bytes for decoded images.
+   */
+  public static synchronized void setMaximumSize(final long maximumBytes) {
+    maximumSize = maximumBytes;
+    evict();
+  }
+
+  /**
+   * Removes the image with the given URL from this cache, e.g. because it has been changed.
+   *
+   * @param url image URL.
+   */
+  public static synchronized void remove(final URL url) {
+    final String key = url.toExternalForm();
+    final BufferedImage image = images.remove(key);
+    if (image != null) {
+      currentSize -= getByteSize(image);
+    }
+    sizes.remove(key);
+  }
+
+  /**
+   * Removes all images from this cache.
+   */
+  public static synchronized void clear() {
+    images.clear();
+    sizes.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Returns the size the image with the given URL will be shown with (i.e. already downscaled if it is much
+   * larger than the display) - only the image header is read, the image itself is not decoded.
+   *
+   * @param url image URL.
+   * @return display size of image, or null if the image cannot be read.
+   */
+  public static Dimension getImageSize(final URL url) {
+    final String key = url.toExternalForm();
+    synchronized (HelpImageCache.class) {
+      final BufferedImage image = images.get(key);
+      if (image != null) {
+        return new Dimension(image.getWidth(), image.getHeight());
+      }
+      if (sizes.containsKey(key)) {
+        final Dimension size = sizes.get(key);
+        return size == null ? null : new Dimension(size);
+      }
+    }
+    final Dimension size = readImageSize(url);
+    synchronized (HelpImageCache.class) {
+      sizes.put(key, size == null ? null : getDisplaySize(size.width, size.height));
+      final Dimension displaySize = sizes.get(key);
+      return displaySize == null ? null : new Dimension(displaySize);
+    }
+  }
+
+  /**
+   * Returns the display size of the image with the given URL if it is already known, without reading anything - if
+   * it is not known yet, the image header is read in the background and the given callback is run on the EDT
+   * afterwards, e.g. to lay out the image again. Nothing is read again for images that cannot be read.
+   *
+   * @param url image URL.
+   * @param whenKnown callback run on the EDT once the size has been read, may be null.
+   * @return display size of image, or null if it is not known yet or the image cannot be read.
+   */
+  public static synchronized Dimension getImageSizeLater(final URL url, final Runnable whenKnown) {
+    final String key = url.toExternalForm();
+    final BufferedImage image = images.get(key);
+    if (image != null) {
+      return new Dimension(image.getWidth(), image.getHeight());
+    }
+    if (sizes.containsKey(key)) {
+      final Dimension size = sizes.get(key);
+      return size == null ? null : new Dimension(size);
+    }
+    List<Runnable> callbacks = pendingSizeReads.get(key);
+    if (callbacks == null) {
+      callbacks = new ArrayList<>();
+      pendingSizeReads.put(key, callbacks);
+      getLoader().submit(new Runnable() {
+        @Override
+        public void run() {
+          getImageSize(url);
+          final List<Runnable> callbacksToRun;
+          synchronized (HelpImageCache.class) {
+            callbacksToRun = pendingSizeReads.remove(key);
+          }
+          SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+              for (final Runnable callback : callbacksToRun) {
+                callback.run();
+              }
+            }
+          });
+        }
+      });
+    }
+    if (whenKnown != null) {
+      callbacks.add(whenKnown);
+    }
+    return null;
+  }
+
+  /**
+   * Returns if the image with the given URL is known to be unreadable - nothing is read by this method.
+   *
+   * @param url image URL.
+   * @return true if reading the image has failed.
+   */
+  public static synchronized boolean isUnreadable(final URL url) {
+    final String key = url.toExternalForm();
+    return sizes.containsKey(key) && sizes.get(key) == null;
+  }
+
+  /**
+   * Returns the decoded image for the given URL if it is already available - if not, the image is decoded in
+   * the background and the given area of the given component is repainted once it is available - this is done for
+   * every component requesting the image while it is decoded.
+   *
+   * @param url image URL.
+   * @param componentToRepaint component to repaint after the image has been loaded, may be null.
+   * @param areaToRepaint area of component to repaint, may be null to repaint the whole component.
+   * @return decoded image, or null if it is not (yet) available.
+   */
+  public static synchronized BufferedImage getImage(final URL url, final Component componentToRepaint, final Rectangle areaToRepaint) {
+    final String key = url.toExternalForm();
+    final BufferedImage image = images.get(key);
+    if (image != null || (sizes.containsKey(key) && sizes.get(key) == null)) {
+      return image;
+    }
+    Set<RepaintTarget> repaintTargets = pendingLoads.get(key);
+    if (repaintTargets == null) {
+      repaintTargets = new LinkedHashSet<>();
+      pendingLoads.put(key, repaintTargets);
+      getLoader().submit(new Runnable() {
+        @Override
+        public void run() {
+          loadImage(url, key);
+          final Set<RepaintTarget> targetsToRepaint;
+          synchronized (HelpImageCache.class) {
+            targetsToRepaint = pendingLoads.remove(key);
+          }
+          if (!targetsToRepaint.isEmpty()) {
+            SwingUtilities.invokeLater(new Runnable() {
+              @Override
+              public void run() {
+                for (final RepaintTarget target : targetsToRepaint) {
+                  target.repaint();
+                }
+              }
+            });
+          }
+        }
+      });
+    }
+    if (componentToRepaint != null) {
+      repaintTargets.add(new RepaintTarget(componentToRepaint, areaToRepaint == null ? null : new Rectangle(areaToRepaint)));
+    }
+    return null;
+  }
+
+  private static void loadImage(final URL url, final String key) {
+    BufferedImage image = null;
+    try {
+      image = ImageIO.read(url);
+    } catch (final Exception ex) {
+      System.err.println("Failed to load image " + key + ": " + ex.getMessage());
+    }
+    if (image != null) {
+      image = downscaleIfNeeded(image);
+    }
+    synchronized (HelpImageCache.class) {
+      if (image == null) {
+        sizes.put(key, null);
+        return;
+      }
+      sizes.put(key, new Dimension(image.getWidth(), image.getHeight()));
+      final BufferedImage oldImage = images.put(key, image);
+      if (oldImage != null) {
+        currentSize -= getByteSize(oldImage);
+      }
+      currentSize += getByteSize(image);
+      evict();
+    }
+  }
+
+  private static void evict() {
+    final Iterator<BufferedImage> it = images.values().iterator();
+    while (currentSize > maximumSize && it.hasNext()) {
+      currentSize -= getByteSize(it.next());
+      it.remove();
+    }
+  }
+
+  private static long getByteSize(final BufferedImage image) {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  private static Dimension readImageSize(final URL url) {
+    try (final InputStream is = url.openStream(); final ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (readers.hasNext()) {
+        final ImageReader reader = readers.next();
+        try {
+          reader.setInput(iis, true, true);
+          return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+          reader.dispose();
+        }
+      }
+    } catch (final Exception ex) {
+      System.err.println("Failed to read image size of " + url + ": " + ex.getMessage());
+    }
+    return null;
+  }
+
+  private static BufferedImage downscaleIfNeeded(final BufferedImage image) {
+    final Dimension target = getDisplaySize(image.getWidth(), image.getHeight());
+    if (target.width == image.getWidth() && target.height == image.getHeight()) {
+      return image;
+    }
+    final BufferedImage scaled = new BufferedImage(target.width, target.height, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(image, 0, 0, target.width, target.height, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+
+  private static Dimension getDisplaySize(final int width, final int height) {
+    final Dimension limit = getDisplayLimit();
+    if (width <= limit.width && height <= limit.height) {
+      return new Dimension(width, height);
+    }
+    final double scale = Math.min((double) limit.width / width, (double) limit.height / height);
+    return new Dimension(Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)));
+  }
+
+  private static synchronized Dimension getDisplayLimit() {
+    if (displayLimit == null) {
+      if (GraphicsEnvironment.isHeadless()) {
+        displayLimit = new Dimension(1920, 1200);
+      } else {
+        displayLimit = Toolkit.getDefaultToolkit().getScreenSize();
+      }
+    }
+    return displayLimit;
+  }
+
+  private static synchronized ExecutorService getLoader() {
+    if (loader == null) {
+      loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r, "HelpImageLoader");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return loader;
+  }
+
+  /**
+   * Area of a component to repaint after an image has been loaded - equal areas are only repainted once.
+   */
+  private static class RepaintTarget {
+
+    private final Component component;
+
+    private final Rectangle area;
+
+    public RepaintTarget(final Component component, final Rectangle area) {
+      this.component = component;
+      this.area = area;
+    }
+
+    public void repaint() {
+      if (this.area == null) {
+        this.component.repaint();
+      } else {
+        this.component.repaint(this.area.x, this.area.y, this.area.width, this.area.height);
+      }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof RepaintTarget)) {
+        return false;
+      }
+      final RepaintTarget other = (RepaintTarget) obj;
+      return this.component == other.component
+             && (this.area == null ? other.area == null : this.area.equals(other.area));
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.component) * 31 + (this.area == null ? 0 : this.area.hashCode());
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+
+import javax.swing.Icon;
+import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.StyledDocument;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+
+/**
+ * Replacement for the standard HTML ImageView - images are taken from the shared HelpImageCache and only
+ * decoded when they are painted for the first time, i.e. when they become visible. Images without WIDTH and HEIGHT
+ * are laid out with a placeholder size until their size has been read in the background. BORDER, HSPACE, VSPACE and
+ * ALIGN are supported like by the standard ImageView.
+ */
+public class HelpImageView extends View {
+
+  private static final int DEFAULT_SIZE = 38;
+
+  /** Border of images inside links without BORDER attribute, like the standard ImageView. */
+  private static final int DEFAULT_LINK_BORDER = 2;
+
+  private URL imageURL;
+
+  private int width = -1;
+
+  private int height = -1;
+
+  private String altText;
+
+  private Dimension size;
+
+  /** Has the image size been requested from the HelpImageCache, with a callback to lay out the image again? */
+  private boolean sizeRequested;
+
+  private AttributeSet viewAttributes;
+
+  private int borderSize;
+
+  /** Space left and right of the image, including the border. */
+  private int horizontalInset;
+
+  /** Space above and below the image, including the border. */
+  private int verticalInset;
+
+  private float verticalAlignment;
+
+  /**
+   * Creates a new instance of HelpImageView for the given IMG element.
+   *
+   * @param elem IMG element.
+   */
+  public HelpImageView(final Element elem) {
+    super(elem);
+    setPropertiesFromAttributes();
+  }
+
+  private void setPropertiesFromAttributes() {
+    final AttributeSet attr = getElement().getAttributes();
+    this.width = getIntAttribute(attr, HTML.Attribute.WIDTH);
+    this.height = getIntAttribute(attr, HTML.Attribute.HEIGHT);
+    this.altText = (String) attr.getAttribute(HTML.Attribute.ALT);
+    final Document doc = getDocument();
+    this.viewAttributes = doc instanceof HTMLDocument ? ((HTMLDocument) doc).getStyleSheet().getViewAttributes(this) : attr;
+    final int border = getIntAttribute(attr, HTML.Attribute.BORDER);
+    this.borderSize = border >= 0 ? border : isLink(attr) ? DEFAULT_LINK_BORDER : 0;
+    this.horizontalInset = Math.max(0, getIntAttribute(attr, HTML.Attribute.HSPACE)) + this.borderSize;
+    this.verticalInset = Math.max(0, getIntAttribute(attr, HTML.Attribute.VSPACE)) + this.borderSize;
+    final Object alignAttr = attr.getAttribute(HTML.Attribute.ALIGN);
+    final String align = alignAttr == null ? null : alignAttr.toString();
+    if ("top".equals(align)) {
+      this.verticalAlignment = 0.0f;
+    } else if ("middle".equals(align)) {
+      this.verticalAlignment = 0.5f;
+    } else {
+      this.verticalAlignment = 1.0f;
+    }
+    this.imageURL = null;
+    final String src = (String) attr.getAttribute(HTML.Attribute.SRC);
+    if (src != null) {
+      try {
+        final URL base = doc instanceof HTMLDocument ? ((HTMLDocument) doc).getBase() : null;
+        this.imageURL = new URL(base, src);
+      } catch (final Exception ex) {
+        System.err.println("Invalid image source " + src + ": " + ex.getMessage());
+      }
+    }
+    this.size = null;
+    this.sizeRequested = false;
+  }
+
+  private static boolean isLink(final AttributeSet attr) {
+    final Object anchorAttr = attr.getAttribute(HTML.Tag.A);
+    return anchorAttr instanceof AttributeSet && ((AttributeSet) anchorAttr).isDefined(HTML.Attribute.HREF);
+  }
+
+  private static int getIntAttribute(final AttributeSet attr, final HTML.Attribute name) {
+    final Object value = attr.getAttribute(name);
+    if (value != null) {
+      try {
+        return Math.max(0, Integer.parseInt(value.toString().trim()));
+      } catch (final NumberFormatException ex) {
+        // relative sizes are not supported, use the image size instead
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the URL of the image shown by this view.
+   *
+   * @return image URL, may be null.
+   */
+  public URL getImageURL() {
+    return this.imageURL;
+  }
+
+  @Override
+  public AttributeSet getAttributes() {
+    return this.viewAttributes;
+  }
+
+  @Override
+  public String getToolTipText(final float x, final float y, final Shape allocation) {
+    return this.altText;
+  }
+
+  private Dimension getSize() {
+    if (this.size == null) {
+      if (this.width >= 0 && this.height >= 0) {
+        this.size = new Dimension(this.width, this.height);
+      } else {
+        final Dimension imageSize = requestImageSize();
+        if (imageSize == null) {
+          this.size = new Dimension(this.width >= 0 ? this.width : DEFAULT_SIZE, this.height >= 0 ? this.height : DEFAULT_SIZE);
+        } else if (this.width >= 0) {
+          this.size = new Dimension(this.width, imageSize.height * this.width / Math.max(1, imageSize.width));
+        } else if (this.height >= 0) {
+          this.size = new Dimension(imageSize.width * this.height / Math.max(1, imageSize.height), this.height);
+        } else {
+          this.size = imageSize;
+        }
+      }
+    }
+    return this.size;
+  }
+
+  /**
+   * Returns the image size if it is already known - layout happens on the EDT, so the image header is read in the
+   * background, and the image is laid out again once its size is known.
+   */
+  private Dimension requestImageSize() {
+    if (this.imageURL == null) {
+      return null;
+    }
+    Runnable whenKnown = null;
+    if (!this.sizeRequested) {
+      this.sizeRequested = true;
+      whenKnown = new Runnable() {
+        @Override
+        public void run() {
+          imageSizeKnown();
+        }
+      };
+    }
+    return HelpImageCache.getImageSizeLater(this.imageURL, whenKnown);
+  }
+
+  private void imageSizeKnown() {
+    if (getParent() == null) {
+      // view has been replaced in the meantime
+      return;
+    }
+    this.size = null;
+    this.sizeRequested = false;
+    final Document doc = getDocument();
+    if (doc instanceof AbstractDocument) {
+      ((AbstractDocument) doc).readLock();
+    }
+    try {
+      preferenceChanged(null, true, true);
+    } finally {
+      if (doc instanceof AbstractDocument) {
+        ((AbstractDocument) doc).readUnlock();
+      }
+    }
+  }
+
+  @Override
+  public float getPreferredSpan(final int axis) {
+    final Dimension d = getSize();
+    return axis == View.X_AXIS ? d.width + 2 * this.horizontalInset : d.height + 2 * this.verticalInset;
+  }
+
+  @Override
+  public float getAlignment(final int axis) {
+    if (axis == View.Y_AXIS) {
+      return this.verticalAlignment;
+    }
+    return super.getAlignment(axis);
+  }
+
+  @Override
+  public void paint(final Graphics g, final Shape a) {
+    final Rectangle alloc = a.getBounds();
+    final Rectangle r = new Rectangle(alloc.x + this.horizontalInset,
+                                      alloc.y + this.verticalInset,
+                                      Math.max(0, alloc.width - 2 * this.horizontalInset),
+                                      Math.max(0, alloc.height - 2 * this.verticalInset));
+    paintBorder(g, r);
+    final Component c = getContainer();
+    BufferedImage image = null;
+    if (this.imageURL != null) {
+      image = HelpImageCache.getImage(this.imageURL, c, new Rectangle(r));
+    }
+    if (image != null) {
+      g.drawImage(image, r.x, r.y, r.width, r.height, null);
+      return;
+    }
+    // placeholder until image has been loaded, or for images that cannot be loaded
+    g.setColor(Color.LIGHT_GRAY);
+    g.drawRect(r.x, r.y, Math.max(0, r.width - 1), Math.max(0, r.height - 1));
+    final Icon missingIcon = UIManager.getLookAndFeelDefaults().getIcon("html.missingImage");
+    if (missingIcon != null && this.imageURL != null && HelpImageCache.isUnreadable(this.imageURL)) {
+      missingIcon.paintIcon(c, g, r.x, r.y);
+    }
+  }
+
+  private void paintBorder(final Graphics g, final Rectangle imageArea) {
+    final Document doc = getDocument();
+    if (this.borderSize <= 0 || !(doc instanceof StyledDocument)) {
+      return;
+    }
+    g.setColor(((StyledDocument) doc).getForeground(getAttributes()));
+    final int x = imageArea.x - this.borderSize;
+    final int y = imageArea.y - this.borderSize;
+    final int width = imageArea.width + 2 * this.borderSize;
+    final int height = imageArea.height + 2 * this.borderSize;
+    for (int i = 0; i < this.borderSize; i++) {
+      g.drawRect(x + i, y + i, width - 2 * i - 1, height - 2 * i - 1);
+    }
+  }
+
+  @Override
+  public void changedUpdate(final DocumentEvent e, final Shape a, final ViewFactory f) {
+    super.changedUpdate(e, a, f);
+    setPropertiesFromAttributes();
+    preferenceChanged(null, true, true);
+  }
+
+  @Override
+  public Shape modelToView(final int pos, final Shape a, final Position.Bias b) {
+    final int p0 = getStartOffset();
+    final int p1 = getEndOffset();
+    if (pos >= p0 && pos <= p1) {
+      final Rectangle r = a.getBounds();
+      if (pos == p1) {
+        r.x += r.width;
+      }
+      r.width = 0;
+      return r;
+    }
+    return null;
+  }
+
+  @Override
+  public int viewToModel(final float x, final float y, final Shape a, final Position.Bias[] bias) {
+    final Rectangle alloc = a.getBounds();
+    if (x < alloc.x + alloc.width) {
+      bias[0] = Position.Bias.Forward;
+      return getStartOffset();
+    }
+    bias[0] = Position.Bias.Backward;
+    return getEndOffset();
+  }
+}
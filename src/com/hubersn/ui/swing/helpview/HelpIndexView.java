@@ -32,11 +32,29 @@ For more information, please refer to <http://unlicense.org/>
 
 package com.hubersn.ui.swing.helpview;
 
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.io.InputStream;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
 import javax.swing.ImageIcon;
+import javax.swing.SwingWorker;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
 
 /**
- * Index view for simple help sets.
+ * Index view for simple help sets. Entries are sorted with the collator of the default locale, entries of
+ * sub-helpsets are merged into the sorted index after the sub-helpsets have been loaded in the background - this
+ * only happens when the view is shown or searched for the first time. Typing
+ * in the search field selects the first entry starting with the typed text (or the next one in sort order), and
+ * filters the entries when the user stops typing.
  */
 public class HelpIndexView extends HelpAbstractOverviewView {
 
@@ -45,8 +63,21 @@ public class HelpIndexView extends HelpAbstractOverviewView {
   /** Name from view config represented by this implementation. */
   public static final String VIEW_NAME = "Index";
 
+  /** Name of the XML tag representing an item in the view data. */
+  public static final String ITEM_TAG_NAME = "indexitem";
+
   private ImageIcon indexIcon;
 
+  private final Collator collator = Collator.getInstance();
+
+  /** Collation keys of the top-level entries, in the order of the children of the root node. */
+  private CollationKey[] sortedKeys = new CollationKey[0];
+
+  /** Sub-helpsets whose entries have not been merged yet, null if there are none. */
+  private List<SubHelpSet> pendingSubHelpSets;
+
+  private String pendingViewName;
+
   /**
    * Creates a new instance of HelpIndexView, a view representing indexitem entries as tree nodes.
    */
@@ -58,6 +89,16 @@ public class HelpIndexView extends HelpAbstractOverviewView {
       // no icon - no problem.
       this.indexIcon = null;
     }
+    // sub-helpsets are only loaded for the index when it is actually used
+    addHierarchyListener(new HierarchyListener() {
+
+      @Override
+      public void hierarchyChanged(final HierarchyEvent e) {
+        if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+          mergePendingSubHelpSets();
+        }
+      }
+    });
   }
 
   /**
@@ -66,12 +107,253 @@ public class HelpIndexView extends HelpAbstractOverviewView {
    * @param indexXMLDoc XML document.
    */
   public void createView(final XMLDocument indexXMLDoc) {
-    super.createView(indexXMLDoc, "indexitem");
+    super.createView(indexXMLDoc, ITEM_TAG_NAME);
+    expandTreeNode((DefaultMutableTreeNode)getTree().getModel().getRoot());
+  }
+
+  @Override
+  public void createView(final InputStream source) throws Exception {
+    createView(HelpOverviewItems.parse(source, ITEM_TAG_NAME));
+  }
+
+  @Override
+  public void createView(final HelpOverviewItems items) {
+    createView(items, false);
     expandTreeNode((DefaultMutableTreeNode)getTree().getModel().getRoot());
   }
 
+  @Override
+  protected void prepareNodes(final HelpOverviewNode root) {
+    this.sortedKeys = sortChildren(root);
+    // entries of sub-helpsets added to a previous tree are not merged into this one
+    this.pendingSubHelpSets = null;
+  }
+
+  /**
+   * Merges the entries of the given sub-helpsets (and their nested sub-helpsets) into the sorted index - the
+   * sub-helpsets are loaded in the background as soon as the view is shown or searched, their entries are added when
+   * all of them are loaded.
+   *
+   * @param subHelpSets sub-helpsets.
+   * @param viewName name of the view to show for the sub-helpsets, usually VIEW_NAME.
+   */
+  @Override
+  public void addSubHelpSets(final List<SubHelpSet> subHelpSets, final String viewName) {
+    if (subHelpSets.isEmpty()) {
+      return;
+    }
+    this.pendingSubHelpSets = subHelpSets;
+    this.pendingViewName = viewName;
+    if (isShowing()) {
+      mergePendingSubHelpSets();
+    }
+  }
+
+  /**
+   * Starts loading the sub-helpsets whose entries have not been merged yet.
+   */
+  private void mergePendingSubHelpSets() {
+    if (this.pendingSubHelpSets == null) {
+      return;
+    }
+    final List<SubHelpSet> subHelpSets = this.pendingSubHelpSets;
+    final String viewName = this.pendingViewName;
+    this.pendingSubHelpSets = null;
+    this.pendingViewName = null;
+    final HelpOverviewNode root = (HelpOverviewNode) getTree().getModel().getRoot();
+    new SwingWorker<List<HelpSet>, Void>() {
+
+      @Override
+      protected List<HelpSet> doInBackground() {
+        final List<HelpSet> loadedHelpSets = new ArrayList<>();
+        collectHelpSets(subHelpSets, viewName, loadedHelpSets);
+        return loadedHelpSets;
+      }
+
+      @Override
+      protected void done() {
+        // the view might have been created again in the meantime
+        if (getTree().getModel().getRoot() != root) {
+          return;
+        }
+        try {
+          for (final HelpSet loadedHelpSet : get()) {
+            merge(root, loadedHelpSet, loadedHelpSet.getOverviewItems(viewName));
+          }
+        } catch (final InterruptedException | ExecutionException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }.execute();
+  }
+
+  /**
+   * Loads the given sub-helpsets and their nested sub-helpsets, collecting those with items for the given view.
+   */
+  private static void collectHelpSets(final List<SubHelpSet> subHelpSets,
+                                      final String viewName,
+                                      final List<HelpSet> loadedHelpSets) {
+    for (final SubHelpSet subHelpSet : subHelpSets) {
+      final HelpSet loadedHelpSet = subHelpSet.getHelpSet();
+      if (loadedHelpSet != null) {
+        if (loadedHelpSet.getOverviewItems(viewName) != null) {
+          loadedHelpSets.add(loadedHelpSet);
+        }
+        collectHelpSets(loadedHelpSet.getSubHelpSets(), viewName, loadedHelpSets);
+      }
+    }
+  }
+
+  /**
+   * Merges the top-level entries of the given items into the sorted children of the root node - the new nodes
+   * keep the helpset mapping their targets.
+   */
+  private void merge(final HelpOverviewNode root, final HelpSet helpSet, final HelpOverviewItems items) {
+    final HelpOverviewNode itemRoot = new HelpOverviewNode(items, HelpOverviewItems.ROOT, helpSet);
+    itemRoot.loadAllChildren();
+    final CollationKey[] addedKeys = sortChildren(itemRoot);
+    if (addedKeys.length == 0) {
+      return;
+    }
+    final HelpOverviewNode[] addedNodes = new HelpOverviewNode[addedKeys.length];
+    for (int i = 0; i < addedNodes.length; i++) {
+      addedNodes[i] = (HelpOverviewNode) itemRoot.getChildAt(i);
+    }
+    final HelpOverviewNode[] nodes = new HelpOverviewNode[root.getChildCount()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = (HelpOverviewNode) root.getChildAt(i);
+    }
+    // both lists are sorted - entries of the index shown so far come first for equal keys
+    final CollationKey[] mergedKeys = new CollationKey[this.sortedKeys.length + addedKeys.length];
+    final int[] insertedIndices = new int[addedKeys.length];
+    root.removeAllChildren();
+    int i = 0;
+    int j = 0;
+    while (i < this.sortedKeys.length || j < addedKeys.length) {
+      final int index = i + j;
+      if (j == addedKeys.length || i < this.sortedKeys.length && this.sortedKeys[i].compareTo(addedKeys[j]) <= 0) {
+        mergedKeys[index] = this.sortedKeys[i];
+        root.add(nodes[i++]);
+      } else {
+        mergedKeys[index] = addedKeys[j];
+        insertedIndices[j] = index;
+        root.add(addedNodes[j++]);
+      }
+    }
+    this.sortedKeys = mergedKeys;
+    ((DefaultTreeModel) getTree().getModel()).nodesWereInserted(root, insertedIndices);
+    for (final HelpOverviewNode addedNode : addedNodes) {
+      expandTreeNode(addedNode);
+    }
+    // the new entries are not filtered yet
+    final String searchText = getSearchText();
+    if (!searchText.isEmpty()) {
+      getTree().filterTreeLater(searchText, false, false);
+    }
+  }
+
+  /**
+   * Sorts the children of the given node and all its descendants by their text.
+   *
+   * @return collation keys of the children of the given node, in their new order.
+   */
+  private CollationKey[] sortChildren(final HelpOverviewNode node) {
+    final SortEntry[] entries = new SortEntry[node.getChildCount()];
+    for (int i = 0; i < entries.length; i++) {
+      final HelpOverviewNode child = (HelpOverviewNode) node.getChildAt(i);
+      entries[i] = new SortEntry(this.collator.getCollationKey(child.toString()), child);
+      sortChildren(child);
+    }
+    // stable, so entries with equal text keep the order of the index file
+    Arrays.sort(entries);
+    node.removeAllChildren();
+    final CollationKey[] keys = new CollationKey[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      keys[i] = entries[i].key;
+      node.add(entries[i].node);
+    }
+    return keys;
+  }
+
+  /**
+   * Selects the first visible top-level entry starting with the given text - if there is none, the visible entry
+   * following the text in sort order is selected. The target of the entry is not shown until the user confirms the
+   * selection, see selectWithoutNavigation.
+   *
+   * @param text start of entry text.
+   */
+  public void selectEntry(final String text) {
+    if (text == null || text.isEmpty() || this.sortedKeys.length == 0) {
+      return;
+    }
+    // keys of texts starting with the given text are never sorted before the key of the text itself
+    final CollationKey key = this.collator.getCollationKey(text);
+    int low = 0;
+    int high = this.sortedKeys.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (this.sortedKeys[mid].compareTo(key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    // entries hidden by the filter are skipped, the last visible entry is used if there is none after the text
+    final TreeModel model = getTree().getModel();
+    final HelpOverviewNode root = (HelpOverviewNode) model.getRoot();
+    HelpOverviewNode entry = null;
+    for (int i = low; i < this.sortedKeys.length && entry == null; i++) {
+      entry = getVisibleChild(model, root, i);
+    }
+    for (int i = Math.min(low, this.sortedKeys.length) - 1; i >= 0 && entry == null; i--) {
+      entry = getVisibleChild(model, root, i);
+    }
+    if (entry != null) {
+      selectWithoutNavigation(new TreePath(entry.getPath()));
+    }
+  }
+
+  private static HelpOverviewNode getVisibleChild(final TreeModel model, final HelpOverviewNode node, final int index) {
+    final HelpOverviewNode child = (HelpOverviewNode) node.getChildAt(index);
+    return model.getIndexOfChild(node, child) >= 0 ? child : null;
+  }
+
+  @Override
+  public void doSearch(final String searchText) {
+    mergePendingSubHelpSets();
+    super.doSearch(searchText);
+  }
+
+  @Override
+  protected void searchTextChanged(final String searchText) {
+    mergePendingSubHelpSets();
+    // the selection is kept when the filter is applied
+    selectEntry(searchText.trim());
+    super.searchTextChanged(searchText);
+  }
+
   @Override
   public ImageIcon getIcon() {
     return this.indexIcon;
   }
-}
\ No newline at end of file
+
+  /**
+   * Node with the collation key of its text, for sorting.
+   */
+  private static class SortEntry implements Comparable<SortEntry> {
+
+    private final CollationKey key;
+
+    private final HelpOverviewNode node;
+
+    public SortEntry(final CollationKey key, final HelpOverviewNode node) {
+      this.key = key;
+      this.node = node;
+    }
+
+    @Override
+    public int compareTo(final SortEntry other) {
+      return this.key.compareTo(other.key);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Element;
+import javax.swing.text.html.HTML;
+
+/**
+ * Checks the links of a help set - all map entries and all links inside the reachable help pages must point to
+ * existing pages, and their references to existing anchors.
+ */
+public class HelpLinkValidator {
+
+  private final HelpSet helpSet;
+
+  /**
+   * Anchor names of loaded pages by URL without reference, null for pages that cannot be read - the pages themselves
+   * are dropped as soon as their links have been extracted.
+   */
+  private final Map<String, Set<String>> anchorNames = new HashMap<>();
+
+  /** Links of loaded pages still to be checked, in the order the pages have been loaded. */
+  private final Queue<Link> linksToCheck = new ArrayDeque<>();
+
+  private final List<String> problems = new ArrayList<>();
+
+  /**
+   * Creates a new instance of HelpLinkValidator for the given help set.
+   *
+   * @param helpSet help set to check.
+   */
+  public HelpLinkValidator(final HelpSet helpSet) {
+    this.helpSet = helpSet;
+  }
+
+  /**
+   * Checks all map entries, and the links of all pages reachable from the map.
+   *
+   * @return list of problems found, empty if all links are valid.
+   */
+  public List<String> validate() {
+    this.anchorNames.clear();
+    this.linksToCheck.clear();
+    this.problems.clear();
+    final String[] targets = this.helpSet.getHelpMapper().getTargets();
+    Arrays.sort(targets);
+    for (final String target : targets) {
+      final String location = this.helpSet.getMappedHelpURLString(target);
+      final URL url = this.helpSet.getHelpURL(location);
+      if (url == null) {
+        this.problems.add("Map ID " + target + ": page " + location + " not found");
+      } else {
+        final int indexOfHash = location.indexOf('#');
+        checkTarget(url, indexOfHash < 0 ? null : location.substring(indexOfHash + 1), "Map ID " + target);
+      }
+    }
+    // pages found while checking links are checked as well
+    Link link;
+    while ((link = this.linksToCheck.poll()) != null) {
+      checkLink(link);
+    }
+    return new ArrayList<>(this.problems);
+  }
+
+  private void collectLinks(final URL pageURL, final HelpDocument doc, final Element elem) {
+    if (!elem.isLeaf()) {
+      for (int i = 0; i < elem.getElementCount(); i++) {
+        collectLinks(pageURL, doc, elem.getElement(i));
+      }
+      return;
+    }
+    final Object anchorAttr = elem.getAttributes().getAttribute(HTML.Tag.A);
+    if (!(anchorAttr instanceof AttributeSet)) {
+      return;
+    }
+    final Object href = ((AttributeSet) anchorAttr).getAttribute(HTML.Attribute.HREF);
+    // the text of a link consists of several leaves, only check the first one
+    if (href == null || isContinuedLink(elem, anchorAttr)) {
+      return;
+    }
+    this.linksToCheck.add(new Link(pageURL, doc.getBase(), href.toString()));
+  }
+
+  private void checkLink(final Link link) {
+    final String source = link.pageURL + ": link " + link.href;
+    final URL linkURL;
+    try {
+      linkURL = new URL(link.base, link.href);
+    } catch (final MalformedURLException ex) {
+      this.problems.add(source + ": invalid URL");
+      return;
+    }
+    // only links into the help set are checked, not external ones
+    if (linkURL.getProtocol().equals(link.pageURL.getProtocol()) && equals(linkURL.getHost(), link.pageURL.getHost())) {
+      checkTarget(linkURL, linkURL.getRef(), source);
+    }
+  }
+
+  private static boolean isContinuedLink(final Element elem, final Object anchorAttr) {
+    final Element parent = elem.getParentElement();
+    final int index = parent.getElementIndex(elem.getStartOffset());
+    return index > 0 && anchorAttr.equals(parent.getElement(index - 1).getAttributes().getAttribute(HTML.Tag.A));
+  }
+
+  private static boolean equals(final String s1, final String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+
+  private void checkTarget(final URL url, final String reference, final String source) {
+    final Set<String> names = getAnchorNames(url);
+    if (names == null) {
+      this.problems.add(source + ": page " + getKey(url) + " cannot be read");
+    } else if (reference != null && !reference.equals("") && !names.contains(reference)) {
+      this.problems.add(source + ": no anchor " + reference + " in page " + getKey(url));
+    }
+  }
+
+  /**
+   * Returns the anchor names of the page with the given URL - a page is loaded on first use, and its links are
+   * queued for checking.
+   */
+  private Set<String> getAnchorNames(final URL url) {
+    final String key = getKey(url);
+    if (this.anchorNames.containsKey(key)) {
+      return this.anchorNames.get(key);
+    }
+    Set<String> names = null;
+    try {
+      final HelpDocument doc = HelpDocument.load(url);
+      names = new HashSet<>(doc.getAnchorNames());
+      collectLinks(url, doc, doc.getDefaultRootElement());
+    } catch (final IOException ex) {
+      System.err.println("Cannot read " + key + ": " + ex.getMessage());
+    }
+    this.anchorNames.put(key, names);
+    return names;
+  }
+
+  private static String getKey(final URL url) {
+    final String externalForm = url.toExternalForm();
+    final int indexOfHash = externalForm.indexOf('#');
+    return indexOfHash < 0 ? externalForm : externalForm.substring(0, indexOfHash);
+  }
+
+  /**
+   * Link found in a page, to be checked after the page has been dropped.
+   */
+  private static class Link {
+
+    private final URL pageURL;
+
+    private final URL base;
+
+    private final String href;
+
+    public Link(final URL pageURL, final URL base, final String href) {
+      this.pageURL = pageURL;
+      this.base = base;
+      this.href = href;
+    }
+  }
+
+  /**
+   * Command line tool: checks the links of the named help set (loaded via the classpath) and prints all problems.
+   *
+   * @param args name of help set.
+   */
+  public static void main(final String[] args) {
+    if (args == null || args.length != 1) {
+      System.err.println("HelpLinkValidator needs the path to a helpset as argument.");
+      System.exit(1);
+    }
+    try {
+      final List<String> problems = new HelpLinkValidator(new HelpSet(args[0])).validate();
+      for (final String problem : problems) {
+        System.out.println(problem);
+      }
+      System.out.println(problems.size() + " problem(s) found.");
+      System.exit(problems.isEmpty() ? 0 : 1);
+    } catch (final Exception ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.net.URL;
+
+/**
+ * Immutable result of resolving a help location like "page.html#section" - the URL of the page and the reference
+ * inside the page.
+ */
+public class HelpLocation {
+
+  private final URL url;
+
+  private final String reference;
+
+  /**
+   * Creates a new instance of HelpLocation.
+   *
+   * @param url URL of page.
+   * @param reference reference inside the page, empty string if there is none.
+   */
+  public HelpLocation(final URL url, final String reference) {
+    this.url = url;
+    this.reference = reference == null ? "" : reference;
+  }
+
+  /**
+   * Returns the URL of the page, without reference.
+   *
+   * @return page URL.
+   */
+  public URL getURL() {
+    return this.url;
+  }
+
+  /**
+   * Returns the reference inside the page.
+   *
+   * @return reference, empty string if there is none.
+   */
+  public String getReference() {
+    return this.reference;
+  }
+
+  @Override
+  public String toString() {
+    return this.reference.isEmpty() ? this.url.toExternalForm() : this.url.toExternalForm() + "#" + this.reference;
+  }
+}
@@ -30,19 +30,70 @@ OTHER DEALINGS IN THE SOFTWARE.
 For more information, please refer to <http://unlicense.org/>
 */
 
+
 package com.hubersn.ui.swing.helpview;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
 /**
- * Maps helpIDs ("target" attribute in a mapID tag) to true target URLs ("url" attribute in a mapID tag).
+ * Maps helpIDs ("target" attribute in a mapID tag) to true target URLs ("url" attribute in a mapID tag). The
+ * mappings are stored compactly for maps with many IDs: all targets and references share one char array, every
+ * page is only stored once no matter how many IDs point into it, and IDs are found through an open-addressing hash
+ * table of entry indices.
  */
 public class HelpMapper {
 
-  private final Map<String, String> helpMap = new HashMap<>();
+  /** Index returned if there is no such entry. */
+  public static final int NONE = -1;
+
+  private int count = 0;
+
+  /** Targets and references of all entries, stored in one array instead of as separate strings. */
+  private char[] chars;
+
+  private int charCount = 0;
+
+  private int[] targetStarts;
+
+  private int[] targetLengths;
+
+  /** Page of every entry as index into pageNames, NONE if the entry has no URL. */
+  private int[] pages;
+
+  private int[] referenceStarts;
+
+  /** Length of the reference of every entry, NONE if its URL has no reference. */
+  private int[] referenceLengths;
+
+  private String[] pageNames;
+
+  private int pageCount = 0;
+
+  /**
+   * Hash table with two ints per slot - hash of the target and entry index plus one, 0 marks a free slot. The hash
+   * is stored in the slot itself, so most mismatches are found without looking at the entry.
+   */
+  private int[] table;
+
+  /** Index of every page name - only used while adding entries. */
+  private Map<String, Integer> pageIndices = new HashMap<>();
+
+  private HelpMapper(final int capacity) {
+    this.chars = new char[capacity * 16];
+    this.targetStarts = new int[capacity];
+    this.targetLengths = new int[capacity];
+    this.pages = new int[capacity];
+    this.referenceStarts = new int[capacity];
+    this.referenceLengths = new int[capacity];
+    this.pageNames = new String[Math.max(16, capacity / 8)];
+    this.table = new int[Integer.highestOneBit(capacity) * 8];
+  }
 
   /**
    * Creates a new instance of HelpMapper based on given input stream with the XML .jhm source.
@@ -51,11 +102,164 @@ public class HelpMapper {
    * @throws Exception on error.
    */
   public HelpMapper(final InputStream helpMapInputStream) throws Exception {
-    final XMLDocument doc = new XMLDocument(helpMapInputStream);
-    final List<XMLDocument.XMLTag> mapTags = doc.getTags("mapID");
-    for (final XMLDocument.XMLTag map : mapTags) {
-      this.helpMap.put(map.getAttribute("target"), map.getAttribute("url"));
+    this(256);
+    final XMLStreamReader reader = XMLDocument.createStreamReader(helpMapInputStream);
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT && "mapID".equals(reader.getLocalName())) {
+          final String target = reader.getAttributeValue(null, "target");
+          final String url = reader.getAttributeValue(null, "url");
+          put(target == null ? "" : target, url == null ? "" : url);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    trim();
+  }
+
+  /**
+   * Creates a new instance of HelpMapper with the given mappings, e.g. read from a HelpSetSnapshot.
+   *
+   * @param helpMap map of help IDs to URLs.
+   */
+  HelpMapper(final Map<String, String> helpMap) {
+    this(Math.max(1, helpMap.size()));
+    for (final Map.Entry<String, String> mapping : helpMap.entrySet()) {
+      put(mapping.getKey(), mapping.getValue());
     }
+    trim();
+  }
+
+  /**
+   * Adds or replaces the mapping of the given target - only used while creating the mapper.
+   */
+  private void put(final String target, final String url) {
+    int entry = indexOf(target);
+    if (entry == NONE) {
+      if (this.count == this.targetStarts.length) {
+        final int capacity = this.count * 2;
+        this.targetStarts = Arrays.copyOf(this.targetStarts, capacity);
+        this.targetLengths = Arrays.copyOf(this.targetLengths, capacity);
+        this.pages = Arrays.copyOf(this.pages, capacity);
+        this.referenceStarts = Arrays.copyOf(this.referenceStarts, capacity);
+        this.referenceLengths = Arrays.copyOf(this.referenceLengths, capacity);
+      }
+      entry = this.count++;
+      this.targetStarts[entry] = addChars(target, 0, target.length());
+      this.targetLengths[entry] = target.length();
+      // at most half of the slots are used
+      if (this.count * 4 > this.table.length) {
+        rehash();
+      }
+      insert(this.table, target.hashCode(), entry);
+    }
+    if (url == null) {
+      this.pages[entry] = NONE;
+      this.referenceLengths[entry] = NONE;
+      return;
+    }
+    final int indexOfHash = url.indexOf('#');
+    this.pages[entry] = getPageIndex(indexOfHash < 0 ? url : url.substring(0, indexOfHash));
+    if (indexOfHash < 0) {
+      this.referenceLengths[entry] = NONE;
+    } else {
+      this.referenceStarts[entry] = addChars(url, indexOfHash + 1, url.length());
+      this.referenceLengths[entry] = url.length() - indexOfHash - 1;
+    }
+  }
+
+  private int getPageIndex(final String pageName) {
+    final Integer knownPage = this.pageIndices.get(pageName);
+    if (knownPage != null) {
+      return knownPage;
+    }
+    if (this.pageCount == this.pageNames.length) {
+      this.pageNames = Arrays.copyOf(this.pageNames, this.pageCount * 2);
+    }
+    this.pageNames[this.pageCount] = pageName;
+    this.pageIndices.put(pageName, this.pageCount);
+    return this.pageCount++;
+  }
+
+  private int addChars(final String s, final int start, final int end) {
+    final int length = end - start;
+    if (this.charCount + length > this.chars.length) {
+      this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.charCount + length));
+    }
+    final int charStart = this.charCount;
+    s.getChars(start, end, this.chars, charStart);
+    this.charCount += length;
+    return charStart;
+  }
+
+  private void rehash() {
+    final int[] newTable = new int[this.table.length * 2];
+    for (int slot = 0; slot < this.table.length; slot += 2) {
+      if (this.table[slot + 1] != 0) {
+        insert(newTable, this.table[slot], this.table[slot + 1] - 1);
+      }
+    }
+    this.table = newTable;
+  }
+
+  private static void insert(final int[] table, final int hash, final int entry) {
+    final int mask = table.length - 1;
+    int slot = (spread(hash) << 1) & mask;
+    while (table[slot + 1] != 0) {
+      slot = (slot + 2) & mask;
+    }
+    table[slot] = hash;
+    table[slot + 1] = entry + 1;
+  }
+
+  private void trim() {
+    this.chars = Arrays.copyOf(this.chars, this.charCount);
+    this.targetStarts = Arrays.copyOf(this.targetStarts, this.count);
+    this.targetLengths = Arrays.copyOf(this.targetLengths, this.count);
+    this.pages = Arrays.copyOf(this.pages, this.count);
+    this.referenceStarts = Arrays.copyOf(this.referenceStarts, this.count);
+    this.referenceLengths = Arrays.copyOf(this.referenceLengths, this.count);
+    this.pageNames = Arrays.copyOf(this.pageNames, this.pageCount);
+    this.pageIndices = null;
+  }
+
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the index of the entry for the given target (help ID).
+   *
+   * @param target help ID.
+   * @return entry index, or NONE if the target is not mapped.
+   */
+  public int indexOf(final String target) {
+    if (target == null) {
+      return NONE;
+    }
+    final int hash = target.hashCode();
+    final int mask = this.table.length - 1;
+    for (int slot = (spread(hash) << 1) & mask; this.table[slot + 1] != 0; slot = (slot + 2) & mask) {
+      if (this.table[slot] == hash && targetEquals(this.table[slot + 1] - 1, target)) {
+        return this.table[slot + 1] - 1;
+      }
+    }
+    return NONE;
+  }
+
+  private boolean targetEquals(final int entry, final String target) {
+    final int length = this.targetLengths[entry];
+    if (length != target.length()) {
+      return false;
+    }
+    final int start = this.targetStarts[entry];
+    for (int i = 0; i < length; i++) {
+      if (this.chars[start + i] != target.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -65,16 +269,83 @@ public class HelpMapper {
    * @return URL representing given help ID, or null if it does not exist.
    */
   public String getURL(final String target) {
-    return this.helpMap.get(target);
+    final int entry = indexOf(target);
+    return entry == NONE ? null : getURL(entry);
   }
 
   /**
-   * Returns all target keys for this help map.
+   * Returns the number of mapped targets - together with getTarget and getURL, this allows to iterate over all
+   * entries without copying them.
+   *
+   * @return number of entries.
+   */
+  public int getTargetCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the target (help ID) of the given entry.
+   *
+   * @param entry entry index.
+   * @return target.
+   */
+  public String getTarget(final int entry) {
+    return new String(this.chars, this.targetStarts[entry], this.targetLengths[entry]);
+  }
+
+  /**
+   * Returns the URL as a string of the given entry.
+   *
+   * @param entry entry index.
+   * @return URL, or null if the entry has no URL.
+   */
+  public String getURL(final int entry) {
+    final String page = getPage(entry);
+    if (page == null || this.referenceLengths[entry] == NONE) {
+      return page;
+    }
+    return new StringBuilder(page.length() + 1 + this.referenceLengths[entry])
+        .append(page)
+        .append('#')
+        .append(this.chars, this.referenceStarts[entry], this.referenceLengths[entry])
+        .toString();
+  }
+
+  /**
+   * Returns the page of the URL of the given entry, i.e. the URL without reference - the same string instance is
+   * returned for all entries pointing into the same page.
+   *
+   * @param entry entry index.
+   * @return page, or null if the entry has no URL.
+   */
+  public String getPage(final int entry) {
+    return this.pages[entry] == NONE ? null : this.pageNames[this.pages[entry]];
+  }
+
+  /**
+   * Returns the reference of the URL of the given entry.
+   *
+   * @param entry entry index.
+   * @return reference, or null if the URL has no reference.
+   */
+  public String getReference(final int entry) {
+    return this.referenceLengths[entry] == NONE
+        ? null
+        : new String(this.chars, this.referenceStarts[entry], this.referenceLengths[entry]);
+  }
+
+  /**
+   * Returns all target keys for this help map - creates a new array on every call, use getTargetCount and
+   * getTarget to iterate over the targets instead.
    * 
    * @return all target keys.
    */
   public String[] getTargets() {
-    return this.helpMap.keySet().toArray(new String[0]);
+    final String[] targets = new String[this.count];
+    for (int entry = 0; entry < this.count; entry++) {
+      targets[entry] = getTarget(entry);
+    }
+    return targets;
   }
 
 }
@@ -0,0 +1,373 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Compact, read-only store of the items of an overview view (e.g. TOC or index) - targets and texts of all items
+ * along with their tree structure in flat arrays, so tree nodes only need to be created for the items actually
+ * shown. Item 0 is the (invisible) root item.
+ */
+public class HelpOverviewItems {
+
+  /** Index of the root item. */
+  public static final int ROOT = 0;
+
+  /** Index returned if there is no such item. */
+  public static final int NONE = -1;
+
+  private int count = 0;
+
+  /** Texts and targets of all items, stored in one array instead of as separate strings. */
+  private char[] chars;
+
+  private int charCount = 0;
+
+  private int[] targetStarts;
+
+  private int[] targetLengths;
+
+  private int[] textStarts;
+
+  private int[] textLengths;
+
+  private int[] parents;
+
+  private int[] firstChildren;
+
+  private int[] nextSiblings;
+
+  /** Texts and targets of all items folded to lower case for case insensitive matching, created on first use. */
+  private volatile char[] foldedChars;
+
+  private HelpOverviewItems(final int capacity) {
+    this.chars = new char[capacity * 16];
+    this.targetStarts = new int[capacity];
+    this.targetLengths = new int[capacity];
+    this.textStarts = new int[capacity];
+    this.textLengths = new int[capacity];
+    this.parents = new int[capacity];
+    this.firstChildren = new int[capacity];
+    this.nextSiblings = new int[capacity];
+  }
+
+  /**
+   * Parses the given XML source - all tags with the given tag name below the XML root element (and all their
+   * descendants) become items, with their "target" and "text" attributes.
+   *
+   * @param source XML source stream.
+   * @param tagName tag name to parse for.
+   * @return parsed items.
+   * @throws XMLStreamException on error reading or parsing the source.
+   */
+  public static HelpOverviewItems parse(final InputStream source, final String tagName) throws XMLStreamException {
+    final HelpOverviewItems items = new HelpOverviewItems(256);
+    items.add(NONE, "root", "root", new HashMap<String, Integer>());
+    // last child of every item, to append the next child
+    int[] lastChildren = new int[256];
+    lastChildren[ROOT] = NONE;
+    // the same targets are usually referenced many times, e.g. in the index, and are only stored once
+    final Map<String, Integer> knownTargets = new HashMap<>();
+    final XMLStreamReader reader = XMLDocument.createStreamReader(source);
+    try {
+      int current = ROOT;
+      // depth of XML elements, 1 is the XML root element
+      int depth = 0;
+      // depth of elements skipped because they are not below a tag with the given name
+      int skipDepth = 0;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (skipDepth == 0 && depth > 1) {
+            if (depth == 2 && !tagName.equals(reader.getLocalName())) {
+              skipDepth = depth;
+            } else {
+              final String target = reader.getAttributeValue(null, "target");
+              final String text = reader.getAttributeValue(null, "text");
+              final int item = items.add(current, target == null ? "" : target, text == null ? "" : text, knownTargets);
+              if (item >= lastChildren.length) {
+                lastChildren = Arrays.copyOf(lastChildren, lastChildren.length * 2);
+              }
+              lastChildren[item] = NONE;
+              if (lastChildren[current] == NONE) {
+                items.firstChildren[current] = item;
+              } else {
+                items.nextSiblings[lastChildren[current]] = item;
+              }
+              lastChildren[current] = item;
+              current = item;
+            }
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          if (skipDepth == depth) {
+            skipDepth = 0;
+          } else if (skipDepth == 0 && depth > 1) {
+            current = items.parents[current];
+          }
+          depth--;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    items.trim();
+    return items;
+  }
+
+  /**
+   * Writes these items in a compact binary form, see read.
+   *
+   * @param out target stream.
+   * @throws IOException on error writing.
+   */
+  void write(final DataOutputStream out) throws IOException {
+    PrecompiledHelpPage.writeNumber(out, this.count);
+    PrecompiledHelpPage.writeString(out, new String(this.chars, 0, this.charCount));
+    for (int item = 0; item < this.count; item++) {
+      // children always follow their parent, so the distance is positive except for the root item
+      PrecompiledHelpPage.writeNumber(out, item - Math.max(0, this.parents[item]));
+      PrecompiledHelpPage.writeNumber(out, this.targetStarts[item]);
+      PrecompiledHelpPage.writeNumber(out, this.targetLengths[item]);
+      PrecompiledHelpPage.writeNumber(out, this.textStarts[item]);
+      PrecompiledHelpPage.writeNumber(out, this.textLengths[item]);
+    }
+  }
+
+  /**
+   * Reads items written by write.
+   *
+   * @param in source stream.
+   * @return read items.
+   * @throws IOException on error reading, or if the data is inconsistent.
+   */
+  static HelpOverviewItems read(final DataInputStream in) throws IOException {
+    final int count = PrecompiledHelpPage.readNumber(in);
+    final HelpOverviewItems items = new HelpOverviewItems(Math.max(1, count));
+    items.chars = PrecompiledHelpPage.readString(in).toCharArray();
+    items.charCount = items.chars.length;
+    // last child of every item, to append the next child
+    final int[] lastChildren = new int[Math.max(1, count)];
+    for (int item = 0; item < count; item++) {
+      final int parentDistance = PrecompiledHelpPage.readNumber(in);
+      final int parent = item == ROOT ? NONE : item - parentDistance;
+      items.targetStarts[item] = PrecompiledHelpPage.readNumber(in);
+      items.targetLengths[item] = PrecompiledHelpPage.readNumber(in);
+      items.textStarts[item] = PrecompiledHelpPage.readNumber(in);
+      items.textLengths[item] = PrecompiledHelpPage.readNumber(in);
+      if (item != ROOT && (parent < 0 || parent >= item)
+          || items.targetStarts[item] + items.targetLengths[item] > items.charCount
+          || items.textStarts[item] + items.textLengths[item] > items.charCount) {
+        throw new IOException("Inconsistent item " + item);
+      }
+      items.parents[item] = parent;
+      items.firstChildren[item] = NONE;
+      items.nextSiblings[item] = NONE;
+      lastChildren[item] = NONE;
+      if (parent != NONE) {
+        if (lastChildren[parent] == NONE) {
+          items.firstChildren[parent] = item;
+        } else {
+          items.nextSiblings[lastChildren[parent]] = item;
+        }
+        lastChildren[parent] = item;
+      }
+    }
+    items.count = count;
+    return items;
+  }
+
+  private int add(final int parent, final String target, final String text, final Map<String, Integer> knownTargets) {
+    if (this.count == this.parents.length) {
+      final int capacity = this.count * 2;
+      this.targetStarts = Arrays.copyOf(this.targetStarts, capacity);
+      this.targetLengths = Arrays.copyOf(this.targetLengths, capacity);
+      this.textStarts = Arrays.copyOf(this.textStarts, capacity);
+      this.textLengths = Arrays.copyOf(this.textLengths, capacity);
+      this.parents = Arrays.copyOf(this.parents, capacity);
+      this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+      this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+    }
+    final int item = this.count++;
+    final Integer knownTargetStart = knownTargets.get(target);
+    if (knownTargetStart == null) {
+      this.targetStarts[item] = addChars(target);
+      knownTargets.put(target, this.targetStarts[item]);
+    } else {
+      this.targetStarts[item] = knownTargetStart;
+    }
+    this.targetLengths[item] = target.length();
+    this.textStarts[item] = addChars(text);
+    this.textLengths[item] = text.length();
+    this.parents[item] = parent;
+    this.firstChildren[item] = NONE;
+    this.nextSiblings[item] = NONE;
+    return item;
+  }
+
+  private int addChars(final String s) {
+    if (this.charCount + s.length() > this.chars.length) {
+      this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.charCount + s.length()));
+    }
+    final int start = this.charCount;
+    s.getChars(0, s.length(), this.chars, start);
+    this.charCount += s.length();
+    return start;
+  }
+
+  private void trim() {
+    this.chars = Arrays.copyOf(this.chars, this.charCount);
+    this.targetStarts = Arrays.copyOf(this.targetStarts, this.count);
+    this.targetLengths = Arrays.copyOf(this.targetLengths, this.count);
+    this.textStarts = Arrays.copyOf(this.textStarts, this.count);
+    this.textLengths = Arrays.copyOf(this.textLengths, this.count);
+    this.parents = Arrays.copyOf(this.parents, this.count);
+    this.firstChildren = Arrays.copyOf(this.firstChildren, this.count);
+    this.nextSiblings = Arrays.copyOf(this.nextSiblings, this.count);
+  }
+
+  /**
+   * Returns the number of items, including the root item.
+   *
+   * @return number of items.
+   */
+  public int getItemCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the target of the given item.
+   *
+   * @param item item index.
+   * @return target, empty string if undefined.
+   */
+  public String getTarget(final int item) {
+    return new String(this.chars, this.targetStarts[item], this.targetLengths[item]);
+  }
+
+  /**
+   * Returns the text of the given item.
+   *
+   * @param item item index.
+   * @return text, empty string if undefined.
+   */
+  public String getText(final int item) {
+    return new String(this.chars, this.textStarts[item], this.textLengths[item]);
+  }
+
+  /**
+   * Returns if the text of the given item contains the given text, ignoring case - the item texts are only folded to
+   * lower case once, for the first call.
+   *
+   * @param item item index.
+   * @param foldedText text to search for, folded with fold.
+   * @return true if the text of the item contains the given text.
+   */
+  public boolean textContains(final int item, final String foldedText) {
+    char[] folded = this.foldedChars;
+    if (folded == null) {
+      folded = new char[this.chars.length];
+      for (int i = 0; i < folded.length; i++) {
+        folded[i] = Character.toLowerCase(this.chars[i]);
+      }
+      this.foldedChars = folded;
+    }
+    final int start = this.textStarts[item];
+    final int last = start + this.textLengths[item] - foldedText.length();
+    for (int i = start; i <= last; i++) {
+      int j = 0;
+      while (j < foldedText.length() && folded[i + j] == foldedText.charAt(j)) {
+        j++;
+      }
+      if (j == foldedText.length()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Folds the given text to lower case the way textContains folds the item texts.
+   *
+   * @param text text.
+   * @return text in lower case.
+   */
+  public static String fold(final String text) {
+    final char[] folded = text.toCharArray();
+    for (int i = 0; i < folded.length; i++) {
+      folded[i] = Character.toLowerCase(folded[i]);
+    }
+    return new String(folded);
+  }
+
+  /**
+   * Returns the parent of the given item.
+   *
+   * @param item item index.
+   * @return parent item index, NONE for the root item.
+   */
+  public int getParent(final int item) {
+    return this.parents[item];
+  }
+
+  /**
+   * Returns the first child of the given item.
+   *
+   * @param item item index.
+   * @return first child item index, NONE if the item has no children.
+   */
+  public int getFirstChild(final int item) {
+    return this.firstChildren[item];
+  }
+
+  /**
+   * Returns the next sibling of the given item.
+   *
+   * @param item item index.
+   * @return next sibling item index, NONE if the item is the last child of its parent.
+   */
+  public int getNextSibling(final int item) {
+    return this.nextSiblings[item];
+  }
+}
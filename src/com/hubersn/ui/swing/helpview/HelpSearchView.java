@@ -38,16 +38,22 @@ import java.awt.Window;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JWindow;
 import javax.swing.SwingUtilities;
+import javax.swing.text.Document;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 
@@ -63,6 +69,13 @@ public class HelpSearchView extends HelpAbstractOverviewView {
 
   private ImageIcon searchIcon;
 
+  /** Parameters of BM25 ranking - term frequency saturation and document length normalisation. */
+  private static final double BM25_K1 = 1.2;
+
+  private static final double BM25_B = 0.75;
+
+  private static ExecutorService searcher;
+
   private HelpSet helpSet;
 
   /**
@@ -91,11 +104,25 @@ public class HelpSearchView extends HelpAbstractOverviewView {
     super.createView(null, "");
   }
 
+  /**
+   * Sets the helpset to search in, e.g. after it has been reloaded.
+   *
+   * @param helpSet helpset.
+   */
+  public void setHelpSet(final HelpSet helpSet) {
+    this.helpSet = helpSet;
+  }
+
   @Override
   public ImageIcon getIcon() {
     return this.searchIcon;
   }
 
+  @Override
+  protected void searchTextChanged(final String searchText) {
+    // the full-text search is only started with the return key
+  }
+
   @Override
   public void doSearch(final String searchText) {
     setWaitCursorForParentWindow();
@@ -104,40 +131,7 @@ public class HelpSearchView extends HelpAbstractOverviewView {
       if (searchText == null || "".equals(searchText)) {
         return;
       }
-      // Search through all mapped docs
-      final HelpMapper helpMapper = this.helpSet.getHelpMapper();
-      final String[] targets = helpMapper.getTargets();
-      // first, collect all URLs - there might be different targets that point to the same URL
-      final Map<URL, String> urls = new HashMap<>();
-      for (final String target : targets) {
-        urls.put(this.helpSet.getMappedHelpURL(target), target);
-      }
-      final List<SearchNode> searchResults = new ArrayList<>();
-      for (final URL url : urls.keySet()) {
-        try {
-          final HelpContentView pane = new HelpContentView();
-          pane.setPage(url);
-          final String toSearch = pane.getPlainText().toLowerCase();
-          final List<Integer> matches = new ArrayList<>();
-          final String realSearchText = searchText.toLowerCase();
-          int index = toSearch.indexOf(realSearchText);
-          while (index >= 0) {
-            matches.add(index);
-            index = toSearch.indexOf(realSearchText, index + 1);
-          }
-          if (!matches.isEmpty()) {
-            String title = pane.getTitle();
-            if (title == null) {
-              title = searchText;
-            }
-            final SearchNode result = new SearchNode(urls.get(url), title, matches, realSearchText.length());
-            searchResults.add(result);
-          }
-        } catch (final Exception ex) {
-          // can this ever happen?
-          ex.printStackTrace();
-        }
-      }
+      final List<SearchNode> searchResults = search(searchText);
       final DefaultMutableTreeNode root = (DefaultMutableTreeNode)getTree().getModel().getRoot();
       if (!searchResults.isEmpty()) {
         Collections.sort(searchResults);
@@ -158,6 +152,130 @@ public class HelpSearchView extends HelpAbstractOverviewView {
     }
   }
 
+  /**
+   * Searches all mapped pages of the helpset and its sub-helpsets for the given text - every helpset is searched
+   * in its own background task, so the search takes about as long as the search of the largest helpset. The hits
+   * are ranked with BM25 based on the statistics of all searched pages, not of their own helpset only.
+   */
+  private List<SearchNode> search(final String searchText) {
+    final String realSearchText = searchText.toLowerCase();
+    final CompletionService<HelpSetHits> completionService = new ExecutorCompletionService<>(getSearcher());
+    completionService.submit(createSearchTask(null, this.helpSet, searchText, realSearchText));
+    int pendingTasks = 1;
+    for (final SubHelpSet subHelpSet : this.helpSet.getSubHelpSets()) {
+      completionService.submit(createSearchTask(subHelpSet, null, searchText, realSearchText));
+      pendingTasks++;
+    }
+    final List<HelpSetHits> allHits = new ArrayList<>();
+    while (pendingTasks > 0) {
+      pendingTasks--;
+      final HelpSetHits hits;
+      try {
+        hits = completionService.take().get();
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (final ExecutionException ex) {
+        ex.printStackTrace();
+        continue;
+      }
+      if (hits.helpSet == null) {
+        // sub-helpset could not be loaded, already logged
+        continue;
+      }
+      allHits.add(hits);
+      if (hits.helpSet != this.helpSet) {
+        // nested sub-helpsets are only known after loading their parent
+        for (final SubHelpSet subHelpSet : hits.helpSet.getSubHelpSets()) {
+          completionService.submit(createSearchTask(subHelpSet, null, searchText, realSearchText));
+          pendingTasks++;
+        }
+      }
+    }
+    // global statistics of all searched pages
+    int pageCount = 0;
+    int matchingPageCount = 0;
+    long totalLength = 0;
+    for (final HelpSetHits hits : allHits) {
+      pageCount += hits.pageCount;
+      matchingPageCount += hits.pages.size();
+      totalLength += hits.totalLength;
+    }
+    final double averageLength = pageCount == 0 ? 1 : Math.max(1, (double) totalLength / pageCount);
+    final double idf = Math.log(1 + (pageCount - matchingPageCount + 0.5) / (matchingPageCount + 0.5));
+    final List<SearchNode> searchResults = new ArrayList<>();
+    for (final HelpSetHits hits : allHits) {
+      // results are only tagged with their helpset if there are several helpsets
+      final String source = allHits.size() > 1 ? hits.helpSet.getTitle() : null;
+      for (final PageHit page : hits.pages) {
+        final int termFrequency = page.matches.size();
+        final double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * page.length / averageLength);
+        final double score = idf * termFrequency * (BM25_K1 + 1) / (termFrequency + lengthNorm);
+        searchResults.add(new SearchNode(getPageTarget(hits.helpSet, page.url),
+                                         page.title,
+                                         page.matches,
+                                         realSearchText.length(),
+                                         hits.helpSet,
+                                         source,
+                                         score));
+      }
+    }
+    return searchResults;
+  }
+
+  private static Callable<HelpSetHits> createSearchTask(final SubHelpSet subHelpSet,
+                                                        final HelpSet loadedHelpSet,
+                                                        final String searchText,
+                                                        final String realSearchText) {
+    return new Callable<HelpSetHits>() {
+      @Override
+      public HelpSetHits call() {
+        final HelpSet searchedHelpSet = subHelpSet != null ? subHelpSet.getHelpSet() : loadedHelpSet;
+        final HelpSetHits hits = new HelpSetHits(searchedHelpSet);
+        if (searchedHelpSet == null) {
+          return hits;
+        }
+        // every page only once, even if different targets point to it
+        for (final URL url : searchedHelpSet.getLocalMappedURLs()) {
+          try {
+            final HelpDocument doc = HelpDocument.load(url);
+            final String toSearch = doc.getText(0, doc.getLength()).toLowerCase();
+            hits.pageCount++;
+            hits.totalLength += toSearch.length();
+            final List<Integer> matches = new ArrayList<>();
+            int index = toSearch.indexOf(realSearchText);
+            while (index >= 0) {
+              matches.add(index);
+              index = toSearch.indexOf(realSearchText, index + 1);
+            }
+            if (!matches.isEmpty()) {
+              final Object title = doc.getProperty(Document.TitleProperty);
+              hits.pages.add(new PageHit(url, title == null ? searchText : title.toString(), matches, toSearch.length()));
+            }
+          } catch (final Exception ex) {
+            // can this ever happen?
+            ex.printStackTrace();
+          }
+        }
+        return hits;
+      }
+    };
+  }
+
+  private static synchronized ExecutorService getSearcher() {
+    if (searcher == null) {
+      searcher = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r, "HelpSearch");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return searcher;
+  }
+
   private void setWaitCursorForParentWindow() {
     setCursorForWindowParent(this, true);
   }
@@ -187,6 +305,60 @@ public class HelpSearchView extends HelpAbstractOverviewView {
     }
   }
 
+  /**
+   * Returns a help ID of the given helpset for the page with the given URL - preferably one without reference, i.e.
+   * pointing to the top of the page.
+   */
+  private static String getPageTarget(final HelpSet pageHelpSet, final URL url) {
+    final List<String> targets = pageHelpSet.getTargetsForURL(url);
+    final HelpMapper helpMapper = pageHelpSet.getHelpMapper();
+    for (final String target : targets) {
+      if (helpMapper.getReference(helpMapper.indexOf(target)) == null) {
+        return target;
+      }
+    }
+    return targets.get(0);
+  }
+
+  /**
+   * Matching pages of a single helpset, along with the statistics of all its searched pages.
+   */
+  private static class HelpSetHits {
+
+    private final HelpSet helpSet;
+
+    private final List<PageHit> pages = new ArrayList<>();
+
+    private int pageCount;
+
+    private long totalLength;
+
+    public HelpSetHits(final HelpSet helpSet) {
+      this.helpSet = helpSet;
+    }
+  }
+
+  /**
+   * Matching page with the offsets of all matches.
+   */
+  private static class PageHit {
+
+    private final URL url;
+
+    private final String title;
+
+    private final List<Integer> matches;
+
+    private final int length;
+
+    public PageHit(final URL url, final String title, final List<Integer> matches, final int length) {
+      this.url = url;
+      this.title = title;
+      this.matches = matches;
+      this.length = length;
+    }
+  }
+
   /**
    * Class representing a search result inside a tree view.
    */
@@ -194,10 +366,34 @@ public class HelpSearchView extends HelpAbstractOverviewView {
     private static final long serialVersionUID = 1L;
     private final List<Integer> matches;
     private final int length;
+    private final String source;
+    private final double score;
     public SearchNode(final String target, final String text, final List<Integer> matches, final int length) {
-      super(target, text);
+      this(target, text, matches, length, null, null, matches.size());
+    }
+    /**
+     * Creates a new search result for a page of the given helpset.
+     *
+     * @param target help ID of the page.
+     * @param text text of node, e.g. page title.
+     * @param matches offsets of matches in the page.
+     * @param length length of every match.
+     * @param helpSet helpset mapping the target, null if unknown.
+     * @param source name of the helpset shown with the result, null to not show it.
+     * @param score relevance of the result, higher is better.
+     */
+    public SearchNode(final String target,
+                      final String text,
+                      final List<Integer> matches,
+                      final int length,
+                      final HelpSet helpSet,
+                      final String source,
+                      final double score) {
+      super(target, text, helpSet);
       this.matches = matches;
       this.length = length;
+      this.source = source;
+      this.score = score;
     }
     public List<Integer> getMatches() {
       return this.matches;
@@ -205,19 +401,20 @@ public class HelpSearchView extends HelpAbstractOverviewView {
     public int getLength() {
       return this.length;
     }
+    public double getScore() {
+      return this.score;
+    }
     @Override
     public String toString() {
-      return this.matches.size() + " " + super.toString();
+      final String text = this.matches.size() + " " + super.toString();
+      return this.source == null ? text : text + " [" + this.source + "]";
     }
     @Override
     public int compareTo(final SearchNode o) {
       if (Objects.equals(this, o)) {
         return 0;
       }
-      if (this.matches.size() == o.matches.size()) {
-        return 0;
-      }
-      return this.matches.size() > o.matches.size() ? 1 : -1;
+      return Double.compare(this.score, o.score);
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.awt.Container;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Shape;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.BoxView;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+import javax.swing.text.html.BlockView;
+
+/**
+ * BODY view for very large documents - the child elements of the body are grouped into sections, and a section
+ * only lays out its content when it is painted or a position inside it is needed (e.g. to scroll to an anchor or
+ * to paint a highlight). Until then, its height is estimated from its text length.
+ */
+public class HelpSectionedBodyView extends BlockView {
+
+  /** Minimum document length for which sectioned rendering is used. */
+  public static final int LARGE_DOCUMENT_LENGTH = 200000;
+
+  private static final int SECTION_LENGTH = 8000;
+
+  /** Element index of the first child element of every section. */
+  private int[] sectionStartIndices = new int[0];
+
+  /**
+   * Creates a new instance of HelpSectionedBodyView for the given BODY element.
+   *
+   * @param elem BODY element.
+   */
+  public HelpSectionedBodyView(final Element elem) {
+    super(elem, View.Y_AXIS);
+  }
+
+  /**
+   * Returns if the given BODY element should be shown with a sectioned view.
+   *
+   * @param elem BODY element.
+   * @return use sectioned view?
+   */
+  public static boolean isSectioningUseful(final Element elem) {
+    return elem.getDocument().getLength() >= LARGE_DOCUMENT_LENGTH && elem.getElementCount() > 1;
+  }
+
+  @Override
+  protected void loadChildren(final ViewFactory f) {
+    if (f == null) {
+      return;
+    }
+    final Element elem = getElement();
+    final List<Integer> starts = new ArrayList<>();
+    final List<View> sections = new ArrayList<>();
+    int sectionStart = 0;
+    int sectionLength = 0;
+    for (int i = 0; i < elem.getElementCount(); i++) {
+      final Element child = elem.getElement(i);
+      sectionLength += child.getEndOffset() - child.getStartOffset();
+      if (sectionLength >= SECTION_LENGTH || i == elem.getElementCount() - 1) {
+        starts.add(sectionStart);
+        sections.add(new Section(elem, sectionStart, i + 1));
+        sectionStart = i + 1;
+        sectionLength = 0;
+      }
+    }
+    this.sectionStartIndices = new int[starts.size()];
+    for (int i = 0; i < this.sectionStartIndices.length; i++) {
+      this.sectionStartIndices[i] = starts.get(i);
+    }
+    replace(0, getViewCount(), sections.toArray(new View[sections.size()]));
+  }
+
+  @Override
+  protected boolean updateChildren(final DocumentEvent.ElementChange ec, final DocumentEvent e, final ViewFactory f) {
+    // help documents are not edited - if the body structure changes anyway, simply build new sections
+    loadChildren(f);
+    return false;
+  }
+
+  @Override
+  protected int getViewIndexAtPosition(final int pos) {
+    final int elementIndex = getElement().getElementIndex(pos);
+    int low = 0;
+    int high = this.sectionStartIndices.length - 1;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (this.sectionStartIndices[mid] <= elementIndex) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return Math.min(low, getViewCount() - 1);
+  }
+
+  /**
+   * Part of the body, representing a range of child elements of the body - only laid out when really needed.
+   */
+  private static class Section extends BoxView {
+
+    private final int startIndex;
+
+    private final int endIndex;
+
+    private boolean realized = false;
+
+    private int pendingWidth = 0;
+
+    private int pendingHeight = 0;
+
+    private float estimatedHeight = -1;
+
+    public Section(final Element body, final int startIndex, final int endIndex) {
+      super(body, View.Y_AXIS);
+      this.startIndex = startIndex;
+      this.endIndex = endIndex;
+    }
+
+    @Override
+    protected void loadChildren(final ViewFactory f) {
+      // child views are only created when this section is realized
+      if (f == null || !this.realized) {
+        return;
+      }
+      final Element elem = getElement();
+      final View[] added = new View[this.endIndex - this.startIndex];
+      for (int i = this.startIndex; i < this.endIndex; i++) {
+        added[i - this.startIndex] = f.create(elem.getElement(i));
+      }
+      replace(0, getViewCount(), added);
+    }
+
+    @Override
+    protected boolean updateChildren(final DocumentEvent.ElementChange ec, final DocumentEvent e, final ViewFactory f) {
+      // element changes of the body are handled by the body view
+      return false;
+    }
+
+    @Override
+    protected int getViewIndexAtPosition(final int pos) {
+      final int index = getElement().getElementIndex(pos) - this.startIndex;
+      return Math.max(0, Math.min(index, getViewCount() - 1));
+    }
+
+    @Override
+    public int getStartOffset() {
+      return getElement().getElement(this.startIndex).getStartOffset();
+    }
+
+    @Override
+    public int getEndOffset() {
+      return getElement().getElement(this.endIndex - 1).getEndOffset();
+    }
+
+    @Override
+    public AttributeSet getAttributes() {
+      // resolve CSS attributes of the content through the body view, not the plain body element
+      final View parent = getParent();
+      return parent != null ? parent.getAttributes() : super.getAttributes();
+    }
+
+    private void realize() {
+      if (!this.realized) {
+        this.realized = true;
+        loadChildren(getViewFactory());
+        super.setSize(this.pendingWidth, this.pendingHeight);
+        preferenceChanged(null, true, true);
+      }
+    }
+
+    private float getEstimatedHeight() {
+      if (this.estimatedHeight < 0) {
+        int charWidth = 7;
+        int lineHeight = 16;
+        final Container c = getContainer();
+        if (c != null && c.getFont() != null) {
+          final FontMetrics fm = c.getFontMetrics(c.getFont());
+          charWidth = Math.max(1, fm.charWidth('n'));
+          lineHeight = fm.getHeight();
+        }
+        final int charsPerLine = Math.max(20, this.pendingWidth / charWidth);
+        // every block starts a new line and has some spacing, every newline (e.g. in PRE) starts a new line
+        long lines = 2L * (this.endIndex - this.startIndex);
+        final Segment text = new Segment();
+        text.setPartialReturn(true);
+        int offset = getStartOffset();
+        final int endOffset = Math.min(getEndOffset(), getDocument().getLength());
+        int lineLength = 0;
+        try {
+          while (offset < endOffset) {
+            getDocument().getText(offset, endOffset - offset, text);
+            for (char ch = text.first(); ch != CharacterIterator.DONE; ch = text.next()) {
+              if (ch == '\n') {
+                lines += 1 + lineLength / charsPerLine;
+                lineLength = 0;
+              } else {
+                lineLength++;
+              }
+            }
+            offset += text.count;
+          }
+        } catch (final BadLocationException ex) {
+          // cannot happen, offsets are taken from the elements
+          ex.printStackTrace();
+        }
+        lines += lineLength / charsPerLine;
+        this.estimatedHeight = lines * lineHeight;
+      }
+      return this.estimatedHeight;
+    }
+
+    @Override
+    public void setSize(final float width, final float height) {
+      if (this.realized) {
+        super.setSize(width, height);
+      } else {
+        final boolean widthChanged = this.pendingWidth != (int) width;
+        this.pendingWidth = (int) width;
+        this.pendingHeight = (int) height;
+        if (widthChanged) {
+          this.estimatedHeight = -1;
+          // estimated height depends on the width
+          preferenceChanged(null, false, true);
+        }
+      }
+    }
+
+    @Override
+    public float getPreferredSpan(final int axis) {
+      if (this.realized) {
+        return super.getPreferredSpan(axis);
+      }
+      return axis == View.Y_AXIS ? getEstimatedHeight() : 0;
+    }
+
+    @Override
+    public float getMinimumSpan(final int axis) {
+      if (this.realized) {
+        return super.getMinimumSpan(axis);
+      }
+      return axis == View.Y_AXIS ? getEstimatedHeight() : 0;
+    }
+
+    @Override
+    public float getMaximumSpan(final int axis) {
+      if (this.realized) {
+        return super.getMaximumSpan(axis);
+      }
+      return axis == View.Y_AXIS ? getEstimatedHeight() : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void paint(final Graphics g, final Shape allocation) {
+      realize();
+      super.paint(g, allocation);
+    }
+
+    @Override
+    public Shape modelToView(final int pos, final Shape a, final Position.Bias b) throws BadLocationException {
+      realize();
+      return super.modelToView(pos, a, b);
+    }
+
+    @Override
+    public Shape modelToView(final int p0,
+                             final Position.Bias b0,
+                             final int p1,
+                             final Position.Bias b1,
+                             final Shape a) throws BadLocationException {
+      realize();
+      return super.modelToView(p0, b0, p1, b1, a);
+    }
+
+    @Override
+    public int viewToModel(final float x, final float y, final Shape a, final Position.Bias[] bias) {
+      realize();
+      return super.viewToModel(x, y, a, bias);
+    }
+
+    @Override
+    public int getNextVisualPositionFrom(final int pos,
+                                         final Position.Bias b,
+                                         final Shape a,
+                                         final int direction,
+                                         final Position.Bias[] biasRet) throws BadLocationException {
+      realize();
+      return super.getNextVisualPositionFrom(pos, b, a, direction, biasRet);
+    }
+  }
+}
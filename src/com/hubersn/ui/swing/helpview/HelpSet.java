@@ -32,55 +32,338 @@ For more information, please refer to <http://unlicense.org/>
 
 package com.hubersn.ui.swing.helpview;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * HelpSet representation - data model for simple help sets.
  */
 public class HelpSet {
 
-  private List<ViewConfig> views;
+  private static ExecutorService loader;
 
-  private String lastRef = "";
+  private static File snapshotDirectory;
 
-  private String title = "";
+  private final List<ViewConfig> views;
 
-  private String rootPath;
+  private final String title;
 
-  private String homeID;
+  private final HelpContentProvider contentProvider;
 
-  private HelpMapper helpMap;
+  private final String helpSetFile;
+
+  private final String homeID;
+
+  private final String mapLocation;
+
+  private final HelpMapper helpMap;
+
+  private final List<SubHelpSet> subHelpSets;
+
+  /** Resolved URLs of pages by name. */
+  private final ConcurrentMap<String, URL> pageURLs = new ConcurrentHashMap<>();
+
+  /** Names of pages that cannot be resolved. */
+  private final ConcurrentMap<String, Boolean> unresolvedPages = new ConcurrentHashMap<>();
+
+  /** Help IDs mapped to every page - created on first use. */
+  private volatile URLIndex urlIndex;
 
   /**
-   * Creates a new helpset by loading the named helpset via the classloader.
+   * Creates a new helpset by loading the named helpset via the classloader. The map and the data of the TOC and
+   * index views are parsed concurrently in background threads - this constructor should not be called on the EDT.
+   * If a snapshot directory is set, a valid snapshot of the helpset is used instead of parsing, and a new snapshot
+   * is written after parsing. After loading, a helpset does not change and can be used by several viewers and
+   * threads at the same time. Sub-helpsets referenced by the helpset are only loaded when they are needed.
    *
    * @param helpSetName name of helpset to load and parse.
    * @throws Exception on error, e.g. help set could not be found or parsed.
    */
   public HelpSet(final String helpSetName) throws Exception {
-    this.views = new ArrayList<>();
-    this.rootPath = helpSetName.substring(0, helpSetName.lastIndexOf('/'));
+    this(new ClasspathHelpContentProvider(helpSetName.substring(0, helpSetName.lastIndexOf('/'))),
+         helpSetName.substring(helpSetName.lastIndexOf('/') + 1));
+  }
+
+  /**
+   * Creates a new helpset by loading the given helpset file from the given content provider, e.g. from a directory
+   * or archive outside of the classpath - see HelpSet(String) for details.
+   *
+   * @param contentProvider provider of helpset content.
+   * @param helpSetFile path of the helpset file relative to the root of the content provider.
+   * @throws Exception on error, e.g. help set could not be found or parsed.
+   */
+  public HelpSet(final HelpContentProvider contentProvider, final String helpSetFile) throws Exception {
+    this.contentProvider = contentProvider;
+    this.helpSetFile = helpSetFile;
     // check if helpset exists, early exit if not
-    final InputStream is = HelpSet.class.getResourceAsStream(helpSetName);
+    final InputStream is = contentProvider.getInputStream(helpSetFile);
     if (is == null) {
-      throw new IllegalArgumentException("HelpSet " + helpSetName + " not found in classpath.");
+      throw new IllegalArgumentException("HelpSet " + helpSetFile + " not found in " + contentProvider.getName() + ".");
     }
-    final XMLDocument helpSetDocument = new XMLDocument(is);
-    this.title = helpSetDocument.getTagValue("title");
+    final File snapshotFile = getSnapshotFile();
+    HelpSetSnapshot snapshot = null;
+    if (snapshotFile != null) {
+      try {
+        snapshot = HelpSetSnapshot.load(snapshotFile, helpSetFile, this);
+      } catch (final IOException ex) {
+        // corrupt snapshot - parse the helpset and replace the snapshot
+        ex.printStackTrace();
+      }
+    }
+    final HelpSetSnapshot content;
+    if (snapshot != null) {
+      is.close();
+      content = snapshot;
+    } else {
+      content = parse(is);
+    }
+    this.title = content.getTitle();
+    this.homeID = content.getHomeID();
+    this.mapLocation = content.getMapLocation();
+    this.helpMap = content.getHelpMapper();
+    this.views = content.getViews();
+    this.subHelpSets = content.getSubHelpSets();
+    if (snapshotFile != null && snapshot == null) {
+      saveSnapshot(snapshotFile);
+    }
+  }
 
-    this.homeID = helpSetDocument.getTagValue("maps" + XMLDocument.XML_PATH_SEPARATOR + "homeID");
-    this.helpMap = new HelpMapper(
-        getHelpInputStream(helpSetDocument.getTagAttribute("maps" + XMLDocument.XML_PATH_SEPARATOR + "mapref", "location")));
+  /**
+   * Creates a new helpset from the given helpset, only parsing the given changed sources again.
+   */
+  private HelpSet(final HelpSet previous, final Collection<String> changedPaths) throws Exception {
+    this.contentProvider = previous.contentProvider;
+    this.helpSetFile = previous.helpSetFile;
+    final HelpSetSnapshot content = previous.parseChanged(changedPaths);
+    this.title = content.getTitle();
+    this.homeID = content.getHomeID();
+    this.mapLocation = content.getMapLocation();
+    this.helpMap = content.getHelpMapper();
+    this.views = content.getViews();
+    this.subHelpSets = content.getSubHelpSets();
+    // pages that have not been changed keep their URL
+    for (final Map.Entry<String, URL> pageURL : previous.pageURLs.entrySet()) {
+      if (!changedPaths.contains(pageURL.getKey())) {
+        this.pageURLs.put(pageURL.getKey(), pageURL.getValue());
+      }
+    }
+    final File snapshotFile = getSnapshotFile();
+    if (snapshotFile != null) {
+      saveSnapshot(snapshotFile);
+    }
+  }
+
+  /**
+   * Returns a helpset with the current content of the given changed files, e.g. after they have been edited - if
+   * the helpset file itself has changed, the helpset is loaded again completely, otherwise only a changed map and
+   * changed TOC or index data are parsed again and everything else is taken from this helpset. Sub-helpsets with
+   * changed files in their directory are reloaded the same way. Like every helpset, this helpset does not change, so
+   * viewers have to switch to the returned helpset.
+   *
+   * @param changedPaths paths of changed files, relative to the root of the content provider.
+   * @return new helpset with the current content.
+   * @throws Exception on error, e.g. if a changed file cannot be parsed.
+   */
+  public HelpSet reload(final Collection<String> changedPaths) throws Exception {
+    if (changedPaths.contains(this.helpSetFile)) {
+      return new HelpSet(this.contentProvider, this.helpSetFile);
+    }
+    return new HelpSet(this, changedPaths);
+  }
+
+  private HelpSetSnapshot parseChanged(final Collection<String> changedPaths) throws Exception {
+    final Future<HelpMapper> mapFuture = changedPaths.contains(this.mapLocation) ? loadMap(this.mapLocation) : null;
+    final List<Future<HelpOverviewItems>> itemFutures = new ArrayList<>();
+    for (final ViewConfig view : this.views) {
+      itemFutures.add(view.getData() != null && changedPaths.contains(view.getData()) ? loadOverviewItems(view) : null);
+    }
+    final HelpMapper mapper = mapFuture == null ? this.helpMap : getResult(mapFuture);
+    // changes inside the directory of a sub-helpset are reloaded by the sub-helpset
+    final List<SubHelpSet> reloadedSubHelpSets = new ArrayList<>(this.subHelpSets.size());
+    boolean subHelpSetsChanged = false;
+    for (final SubHelpSet subHelpSet : this.subHelpSets) {
+      final SubHelpSet reloadedSubHelpSet = subHelpSet.reload(changedPaths);
+      reloadedSubHelpSets.add(reloadedSubHelpSet);
+      subHelpSetsChanged |= reloadedSubHelpSet != subHelpSet;
+    }
+    final List<ViewConfig> loadedViews = new ArrayList<>();
+    for (int i = 0; i < itemFutures.size(); i++) {
+      final ViewConfig view = this.views.get(i);
+      if (itemFutures.get(i) == null) {
+        loadedViews.add(view);
+      } else {
+        loadedViews.add(new ViewConfig(view.getName(), view.getLabel(), view.getData(), getResult(itemFutures.get(i))));
+      }
+    }
+    return new HelpSetSnapshot(this.title,
+                               this.homeID,
+                               this.mapLocation,
+                               mapper,
+                               Collections.unmodifiableList(loadedViews),
+                               subHelpSetsChanged ? Collections.unmodifiableList(reloadedSubHelpSets) : this.subHelpSets);
+  }
+
+  private File getSnapshotFile() {
+    final File directory = getSnapshotDirectory();
+    return directory == null
+        ? null
+        : HelpSetSnapshot.getSnapshotFile(directory, this.contentProvider.getName() + "/" + this.helpSetFile);
+  }
+
+  private void saveSnapshot(final File snapshotFile) {
+    try {
+      HelpSetSnapshot.save(snapshotFile, this.helpSetFile, this);
+    } catch (final IOException ex) {
+      // helpset is usable anyway, only the next start will be slower
+      ex.printStackTrace();
+    }
+  }
+
+  private HelpSetSnapshot parse(final InputStream is) throws Exception {
+    final XMLDocument helpSetDocument = new XMLDocument(is);
+    final String mapLocation = helpSetDocument.getTagAttribute("maps" + XMLDocument.XML_PATH_SEPARATOR + "mapref", "location");
+    final Future<HelpMapper> mapFuture = loadMap(mapLocation);
+    final List<ViewConfig> viewConfigs = new ArrayList<>();
+    final List<Future<HelpOverviewItems>> itemFutures = new ArrayList<>();
     List<XMLDocument.XMLTag> viewTags = helpSetDocument.getTags("view");
     for (final XMLDocument.XMLTag viewTag : viewTags) {
       List<XMLDocument.XMLTag> children = viewTag.children;
-      this.views.add(new ViewConfig(children));
+      final ViewConfig view = new ViewConfig(children);
+      viewConfigs.add(view);
+      itemFutures.add(loadOverviewItems(view));
+    }
+    // sub-helpsets are loaded on demand, only their titles are needed now
+    final List<SubHelpSet> subHelpSetList = new ArrayList<>();
+    for (final XMLDocument.XMLTag subHelpSetTag : helpSetDocument.getTags("subhelpset")) {
+      final String location = subHelpSetTag.getAttribute("location");
+      if (!location.isEmpty()) {
+        final String subHelpSetTitle = subHelpSetTag.getAttribute("title");
+        subHelpSetList.add(new SubHelpSet(this.contentProvider,
+                                          location,
+                                          subHelpSetTitle.isEmpty() ? SubHelpSet.readTitle(this.contentProvider, location) : subHelpSetTitle));
+      }
+    }
+    // wait for all background parsers, also if one of them fails
+    Exception failure = null;
+    HelpMapper mapper = null;
+    try {
+      mapper = getResult(mapFuture);
+    } catch (final Exception ex) {
+      failure = ex;
+    }
+    final List<ViewConfig> loadedViews = new ArrayList<>();
+    for (int i = 0; i < itemFutures.size(); i++) {
+      try {
+        final ViewConfig view = viewConfigs.get(i);
+        loadedViews.add(new ViewConfig(view.getName(), view.getLabel(), view.getData(), getResult(itemFutures.get(i))));
+      } catch (final Exception ex) {
+        failure = failure == null ? ex : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
+    return new HelpSetSnapshot(helpSetDocument.getTagValue("title"),
+                               helpSetDocument.getTagValue("maps" + XMLDocument.XML_PATH_SEPARATOR + "homeID"),
+                               mapLocation,
+                               mapper,
+                               Collections.unmodifiableList(loadedViews),
+                               Collections.unmodifiableList(subHelpSetList));
+  }
+
+  /**
+   * Sets the directory for snapshots of loaded helpsets - with a snapshot, a helpset can be loaded without parsing
+   * its XML sources again as long as they do not change.
+   *
+   * @param directory snapshot directory, null to neither use nor create snapshots (default).
+   */
+  public static synchronized void setSnapshotDirectory(final File directory) {
+    snapshotDirectory = directory;
+  }
+
+  /**
+   * Returns the directory for snapshots of loaded helpsets.
+   *
+   * @return snapshot directory, null if snapshots are not used.
+   */
+  public static synchronized File getSnapshotDirectory() {
+    return snapshotDirectory;
+  }
+
+  private Future<HelpMapper> loadMap(final String location) {
+    return getLoader().submit(new Callable<HelpMapper>() {
+      @Override
+      public HelpMapper call() throws Exception {
+        try (InputStream mapInputStream = getHelpInputStream(location)) {
+          return new HelpMapper(mapInputStream);
+        }
+      }
+    });
+  }
+
+  private Future<HelpOverviewItems> loadOverviewItems(final ViewConfig view) {
+    final String itemTagName;
+    if (HelpTOCView.VIEW_NAME.equals(view.getName())) {
+      itemTagName = HelpTOCView.ITEM_TAG_NAME;
+    } else if (HelpIndexView.VIEW_NAME.equals(view.getName())) {
+      itemTagName = HelpIndexView.ITEM_TAG_NAME;
+    } else {
+      return null;
+    }
+    return getLoader().submit(new Callable<HelpOverviewItems>() {
+      @Override
+      public HelpOverviewItems call() throws Exception {
+        try (InputStream itemInputStream = getHelpInputStream(view.getData())) {
+          return HelpOverviewItems.parse(itemInputStream, itemTagName);
+        }
+      }
+    });
+  }
+
+  private static <T> T getResult(final Future<T> future) throws Exception {
+    if (future == null) {
+      return null;
+    }
+    try {
+      return future.get();
+    } catch (final ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw ex;
+    }
+  }
+
+  private static synchronized ExecutorService getLoader() {
+    if (loader == null) {
+      loader = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r, "HelpSetLoader");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return loader;
   }
 
   /**
@@ -89,7 +372,7 @@ public class HelpSet {
    * @return list of views.
    */
   public List<ViewConfig> getViews() {
-    return Collections.unmodifiableList(this.views);
+    return this.views;
   }
 
   /**
@@ -129,86 +412,307 @@ public class HelpSet {
   }
 
   /**
-   * Returns if the given helpId is defined in our HelpMap for this HelpSet.
+   * Returns if the given helpId is defined in our HelpMap for this HelpSet or in the map of a sub-helpset - note that
+   * all sub-helpsets are loaded to find out that a helpId is invalid.
    * 
    * @param helpId helpId to check.
    * @return helpId valid?
    */
   public boolean isValidId(final String helpId) {
-    return this.helpMap.getURL(helpId) != null;
+    return getHelpSetForId(helpId) != null;
   }
 
   /**
-   * Returns the last reference that was asked for via getHelpURL.
-   * 
-   * @return last reference asked for via getHelpURL.
+   * Returns the helpset mapping the given help ID - this helpset or one of its sub-helpsets. Already loaded
+   * sub-helpsets are checked first, the others are loaded one after the other until one of them maps the ID.
+   *
+   * @param helpId help ID.
+   * @return helpset mapping the ID, null if the ID is not mapped at all.
+   */
+  public HelpSet getHelpSetForId(final String helpId) {
+    return getHelpSetForId(helpId, true);
+  }
+
+  /**
+   * Returns the helpset mapping the given help ID - this helpset or one of its sub-helpsets. Already loaded
+   * sub-helpsets are checked first, the others only if requested - e.g. lookups from the UI should not load all
+   * sub-helpsets just to find out that an ID is not mapped.
+   *
+   * @param helpId help ID.
+   * @param loadSubHelpSets load sub-helpsets not loaded yet one after the other until one of them maps the ID?
+   * @return helpset mapping the ID, null if the ID is not mapped (by the checked helpsets).
+   */
+  public HelpSet getHelpSetForId(final String helpId, final boolean loadSubHelpSets) {
+    if (helpId == null || helpId.isEmpty()) {
+      return null;
+    }
+    if (this.helpMap.getURL(helpId) != null) {
+      return this;
+    }
+    for (final boolean loadedOnly : new boolean[] { true, false }) {
+      if (!loadedOnly && !loadSubHelpSets) {
+        break;
+      }
+      for (final SubHelpSet subHelpSet : this.subHelpSets) {
+        if (subHelpSet.isLoaded() == loadedOnly) {
+          final HelpSet loadedHelpSet = subHelpSet.getHelpSet();
+          final HelpSet mappingHelpSet = loadedHelpSet == null ? null
+              : loadedHelpSet.getHelpSetForId(helpId, loadSubHelpSets);
+          if (mappingHelpSet != null) {
+            return mappingHelpSet;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the sub-helpsets referenced by this helpset, in the order of their definition.
+   *
+   * @return sub-helpsets, empty if there are none.
    */
-  public String getLastRef() {
-    return this.lastRef;
+  public List<SubHelpSet> getSubHelpSets() {
+    return this.subHelpSets;
+  }
+
+  /**
+   * Returns the parsed items of the first TOC or index view with the given name.
+   *
+   * @param viewName name of view, e.g. HelpTOCView.VIEW_NAME.
+   * @return items, null if there is no such view.
+   */
+  public HelpOverviewItems getOverviewItems(final String viewName) {
+    for (final ViewConfig view : this.views) {
+      if (viewName.equals(view.getName()) && view.getOverviewItems() != null) {
+        return view.getOverviewItems();
+      }
+    }
+    return null;
   }
 
   /**
    * Translates the given name into an URL that is showable in the content view.
    * 
-   * @param name name.
+   * @param name name, a reference part is ignored.
    * @return URL representing the name.
    */
   public URL getHelpURL(final String name) {
-    this.lastRef = "";
-    URL returnURL = null;
-    try {
-      String ref = "";
-      final int indexOfHash = name.indexOf('#');
-      if (indexOfHash >= 0) {
-        ref = name.substring(indexOfHash + 1);
-        this.lastRef = ref;
+    final HelpLocation location = getHelpLocation(name);
+    return location == null ? null : location.getURL();
+  }
+
+  /**
+   * Translates the given name like "page.html#section" into the URL of the page that is showable in the content
+   * view, along with the reference inside the page.
+   *
+   * @param name name.
+   * @return location representing the name, null if the page cannot be resolved.
+   */
+  public HelpLocation getHelpLocation(final String name) {
+    if (name == null) {
+      return null;
+    }
+    final int indexOfHash = name.indexOf('#');
+    // strip name from trailing reference
+    final URL pageURL = getPageURL(indexOfHash < 0 ? name : name.substring(0, indexOfHash));
+    return pageURL == null ? null : new HelpLocation(pageURL, indexOfHash < 0 ? "" : name.substring(indexOfHash + 1));
+  }
+
+  /**
+   * Returns the URL of the page with the given name - every page is only resolved once, failures are only logged
+   * for the first request.
+   *
+   * @param pageName name of page without reference.
+   * @return URL of page, null if it cannot be resolved.
+   */
+  private URL getPageURL(final String pageName) {
+    final URL knownURL = this.pageURLs.get(pageName);
+    if (knownURL != null || this.unresolvedPages.containsKey(pageName)) {
+      return knownURL;
+    }
+    final URL pageURL = this.contentProvider.getURL(pageName);
+    if (pageURL != null) {
+      this.pageURLs.putIfAbsent(pageName, pageURL);
+    } else if (this.unresolvedPages.putIfAbsent(pageName, Boolean.TRUE) == null) {
+      System.err.println("Failed to create URL for resource " + pageName + " in " + this.contentProvider.getName());
+    }
+    return pageURL;
+  }
+
+  /**
+   * Returns all help IDs mapped to the page with the given URL (a reference part of the URL is ignored) - if this
+   * helpset does not map the page, already loaded sub-helpsets are asked.
+   *
+   * @param url URL of page.
+   * @return help IDs mapped to the page, in no particular order - empty if there are none.
+   */
+  public List<String> getTargetsForURL(final URL url) {
+    final List<String> targets = getURLIndex().targetsByURL.get(getPageKey(url));
+    if (targets != null) {
+      return Collections.unmodifiableList(targets);
+    }
+    for (final SubHelpSet subHelpSet : this.subHelpSets) {
+      if (subHelpSet.isLoaded()) {
+        final List<String> subHelpSetTargets = subHelpSet.getHelpSet().getTargetsForURL(url);
+        if (!subHelpSetTargets.isEmpty()) {
+          return subHelpSetTargets;
+        }
       }
-      // strip name from trailing reference
-      String myname = indexOfHash < 0 ? name : name.substring(0, indexOfHash);
-      String res = this.rootPath + "/" + URLEncoder.encode(myname, "UTF-8");
-      returnURL = HelpSet.class.getResource(res);
-      if (returnURL == null) {
-        System.err.println("Failed to create URL for resource " + res + " based on name " + name);
+    }
+    return Collections.<String>emptyList();
+  }
+
+  /**
+   * Returns the URLs of all pages any help ID is mapped to, each page only once and without reference part - this
+   * includes the pages of all sub-helpsets, which are loaded if necessary.
+   *
+   * @return URLs of all mapped pages.
+   */
+  public List<URL> getMappedURLs() {
+    if (this.subHelpSets.isEmpty()) {
+      return Collections.unmodifiableList(getURLIndex().urls);
+    }
+    final List<URL> urls = new ArrayList<>(getURLIndex().urls);
+    for (final SubHelpSet subHelpSet : this.subHelpSets) {
+      final HelpSet loadedHelpSet = subHelpSet.getHelpSet();
+      if (loadedHelpSet != null) {
+        urls.addAll(loadedHelpSet.getMappedURLs());
       }
-    } catch (Exception ex) {
-      // TODO Auto-generated catch block
-      ex.printStackTrace();
     }
-    return returnURL;
+    return Collections.unmodifiableList(urls);
+  }
+
+  /**
+   * Returns the URLs of all pages any help ID of this helpset's own map is mapped to - without the pages of
+   * sub-helpsets, each page only once and without reference part.
+   *
+   * @return URLs of pages mapped by this helpset itself.
+   */
+  public List<URL> getLocalMappedURLs() {
+    return Collections.unmodifiableList(getURLIndex().urls);
+  }
+
+  private URLIndex getURLIndex() {
+    // created without lock - if several threads need it at the same time, each creates an identical one
+    URLIndex index = this.urlIndex;
+    if (index == null) {
+      index = new URLIndex();
+      for (int entry = 0; entry < this.helpMap.getTargetCount(); entry++) {
+        final String page = this.helpMap.getPage(entry);
+        final URL pageURL = page == null ? null : getPageURL(page);
+        if (pageURL == null) {
+          continue;
+        }
+        final String key = getPageKey(pageURL);
+        List<String> targets = index.targetsByURL.get(key);
+        if (targets == null) {
+          targets = new ArrayList<>(1);
+          index.targetsByURL.put(key, targets);
+          index.urls.add(pageURL);
+        }
+        targets.add(this.helpMap.getTarget(entry));
+      }
+      this.urlIndex = index;
+    }
+    return index;
+  }
+
+  private static String getPageKey(final URL url) {
+    final String externalForm = url.toExternalForm();
+    final int indexOfHash = externalForm.indexOf('#');
+    return indexOfHash < 0 ? externalForm : externalForm.substring(0, indexOfHash);
   }
 
   /**
-   * Returns the URL mapped to the given help ID.
+   * Returns the location (page URL and reference) mapped to the given help ID by this helpset or a sub-helpset.
+   *
+   * @param id help ID.
+   * @return mapped location for help ID, null if the ID is not mapped or its page cannot be resolved.
+   */
+  public HelpLocation getMappedHelpLocation(final String id) {
+    final HelpSet mappingHelpSet = getHelpSetForId(id);
+    return mappingHelpSet == null ? null : mappingHelpSet.getHelpLocation(mappingHelpSet.helpMap.getURL(id));
+  }
+
+  /**
+   * Returns the URL mapped to the given help ID by this helpset or a sub-helpset.
    * 
    * @param id help ID.
    * @return mapped URL for help ID.
    */
   public URL getMappedHelpURL(final String id) {
-    return getHelpURL(this.helpMap.getURL(id));
+    final HelpSet mappingHelpSet = getHelpSetForId(id);
+    return mappingHelpSet == null ? null : mappingHelpSet.getHelpURL(mappingHelpSet.helpMap.getURL(id));
   }
 
   /**
-   * Returns the URL mapped to the given help ID as plain string.
+   * Returns the URL mapped to the given help ID as plain string, relative to the helpset mapping the ID.
    * 
    * @param id help ID.
    * @return mapped URL for help ID as plain string.
    */
   public String getMappedHelpURLString(final String id) {
-    return this.helpMap.getURL(id);
+    final HelpSet mappingHelpSet = getHelpSetForId(id);
+    return mappingHelpSet == null ? null : mappingHelpSet.helpMap.getURL(id);
   }
 
   /**
-   * Returns an input stream for a resource via the Classloader of this class.
+   * Returns an input stream for a resource of this help set via its content provider.
    * 
    * @param resourceName name of the resource for the input stream.
-   * @return input stream for given resource.
+   * @return input stream for given resource, null if it does not exist or cannot be opened.
    */
   public InputStream getHelpInputStream(final String resourceName) {
-    return HelpSet.class.getResourceAsStream(this.rootPath + "/" + resourceName);
+    try {
+      return this.contentProvider.getInputStream(resourceName);
+    } catch (final IOException ex) {
+      ex.printStackTrace();
+      return null;
+    }
   }
 
   /**
-   * Returns the help mapper used for this help set.
+   * Returns the provider of the content of this help set.
+   *
+   * @return content provider.
+   */
+  public HelpContentProvider getContentProvider() {
+    return this.contentProvider;
+  }
+
+  /**
+   * Releases the resources held by the content provider of this helpset, e.g. closes an archive - the helpset, its
+   * sub-helpsets and helpsets reloaded from it share the provider and cannot be used afterwards.
+   *
+   * @throws IOException on error closing the content provider.
+   */
+  public void close() throws IOException {
+    if (this.contentProvider instanceof Closeable) {
+      ((Closeable) this.contentProvider).close();
+    }
+  }
+
+  /**
+   * Returns the path of the helpset file, relative to the root of the content provider.
+   *
+   * @return helpset file.
+   */
+  public String getHelpSetFile() {
+    return this.helpSetFile;
+  }
+
+  /**
+   * Returns the location of the map of this help set, relative to the help set.
+   *
+   * @return map location.
+   */
+  public String getMapLocation() {
+    return this.mapLocation;
+  }
+
+  /**
+   * Returns the help mapper used for this help set - without the maps of sub-helpsets.
    * 
    * @return help mapper.
    */
@@ -216,14 +720,26 @@ public class HelpSet {
     return this.helpMap;
   }
 
+  /**
+   * Help IDs mapped to every page, by page URL without reference, and the URLs of all mapped pages.
+   */
+  private static class URLIndex {
+
+    private final Map<String, List<String>> targetsByURL = new HashMap<>();
+
+    private final List<URL> urls = new ArrayList<>();
+  }
+
   /**
    * Simple data class to encapsulate a help view's config created from an XML definition in .hs resource.
    */
   public static class ViewConfig {
 
-    private String name;
-    private String label;
-    private String data;
+    private final String name;
+    private final String label;
+    private final String data;
+
+    private final HelpOverviewItems overviewItems;
 
     /**
      * Creates a new instance of ViewConfig based on the XML tags of a view tag from a .hs file.
@@ -231,17 +747,39 @@ public class HelpSet {
      * @param viewTags tag list for this view.
      */
     public ViewConfig(final List<XMLDocument.XMLTag> viewTags) {
+      String viewName = null;
+      String viewLabel = null;
+      String viewData = null;
       for (final XMLDocument.XMLTag innerTag : viewTags) {
         if ("name".equals(innerTag.tag)) {
-          this.name = innerTag.text;
+          viewName = innerTag.text;
         }
         if ("label".equals(innerTag.tag)) {
-          this.label = innerTag.text;
+          viewLabel = innerTag.text;
         }
         if ("data".equals(innerTag.tag)) {
-          this.data = innerTag.text;
+          viewData = innerTag.text;
         }
       }
+      this.name = viewName;
+      this.label = viewLabel;
+      this.data = viewData;
+      this.overviewItems = null;
+    }
+
+    /**
+     * Creates a new instance of ViewConfig with the given values, e.g. read from a HelpSetSnapshot.
+     *
+     * @param name name of view.
+     * @param label label of view.
+     * @param data data of view.
+     * @param overviewItems parsed TOC or index items, may be null.
+     */
+    ViewConfig(final String name, final String label, final String data, final HelpOverviewItems overviewItems) {
+      this.name = name;
+      this.label = label;
+      this.data = data;
+      this.overviewItems = overviewItems;
     }
 
     /**
@@ -270,5 +808,14 @@ public class HelpSet {
     public String getData() {
       return this.data;
     }
+
+    /**
+     * Returns the already parsed data of this view if it is a TOC or index view.
+     *
+     * @return parsed TOC or index items, or null if not available.
+     */
+    public HelpOverviewItems getOverviewItems() {
+      return this.overviewItems;
+    }
   }
 }
@@ -0,0 +1,210 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of loaded helpsets - every helpset is only loaded once and shared, along with a cache of
+ * its loaded documents, by all users (e.g. several HelpViewer frames) until the last user releases it.
+ */
+public class HelpSetRegistry {
+
+  private static final Map<String, Entry> entries = new HashMap<>();
+
+  private HelpSetRegistry() {
+    // purely static, no instance allowed
+  }
+
+  /**
+   * Returns the helpset with the given name, loading it if it is not already in use - every call must be balanced
+   * with a call to release.
+   *
+   * @param helpSetName name of helpset.
+   * @return shared helpset.
+   * @throws Exception on error loading the helpset, see HelpSet.
+   */
+  public static HelpSet acquire(final String helpSetName) throws Exception {
+    final int indexOfSlash = helpSetName.lastIndexOf('/');
+    return acquire(new ClasspathHelpContentProvider(helpSetName.substring(0, indexOfSlash)), helpSetName.substring(indexOfSlash + 1));
+  }
+
+  /**
+   * Returns the helpset with the given file from the given content provider, loading it if it is not already in use
+   * - helpsets are identified by the name of their content provider and their file. Every call must be balanced with
+   * a call to release. The registry takes ownership of the given content provider: if the helpset is already in use,
+   * the given provider is closed right away, otherwise it is closed with the helpset.
+   *
+   * @param contentProvider provider of helpset content, only used if the helpset is not already in use.
+   * @param helpSetFile path of the helpset file relative to the root of the content provider.
+   * @return shared helpset.
+   * @throws Exception on error loading the helpset, see HelpSet.
+   */
+  public static HelpSet acquire(final HelpContentProvider contentProvider, final String helpSetFile) throws Exception {
+    final String key = getKey(contentProvider, helpSetFile);
+    final Entry entry;
+    synchronized (entries) {
+      Entry existingEntry = entries.get(key);
+      if (existingEntry == null) {
+        existingEntry = new Entry(key, contentProvider, helpSetFile);
+        entries.put(key, existingEntry);
+      }
+      existingEntry.references++;
+      entry = existingEntry;
+    }
+    if (entry.contentProvider != contentProvider) {
+      // the provider of the shared helpset is used instead
+      close(contentProvider);
+    }
+    try {
+      // loaded outside of the registry lock, so different helpsets can be loaded at the same time
+      return entry.getHelpSet();
+    } catch (final Exception ex) {
+      release(entry);
+      throw ex;
+    }
+  }
+
+  /**
+   * Releases a helpset returned by acquire - when it is released by all users, it is removed from the registry and
+   * closed, see HelpSet.close.
+   *
+   * @param helpSet helpset.
+   */
+  public static void release(final HelpSet helpSet) {
+    final Entry entry = getEntry(helpSet);
+    if (entry != null) {
+      release(entry);
+    }
+  }
+
+  private static void release(final Entry entry) {
+    synchronized (entries) {
+      entry.references--;
+      if (entry.references > 0 || entries.get(entry.key) != entry) {
+        return;
+      }
+      entries.remove(entry.key);
+      entry.documentCache.clear();
+    }
+    // closed outside of the registry lock, the entry is not reachable anymore - also if loading has failed
+    close(entry.contentProvider);
+  }
+
+  private static void close(final HelpContentProvider contentProvider) {
+    if (contentProvider instanceof Closeable) {
+      try {
+        ((Closeable) contentProvider).close();
+      } catch (final IOException ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Returns the document cache shared by all users of the given helpset.
+   *
+   * @param helpSet helpset returned by acquire.
+   * @return shared document cache, or null if the helpset is not in this registry.
+   */
+  public static HelpDocumentCache getDocumentCache(final HelpSet helpSet) {
+    final Entry entry = getEntry(helpSet);
+    return entry == null ? null : entry.documentCache;
+  }
+
+  /**
+   * Returns the number of users of the helpset with the given name.
+   *
+   * @param helpSetName name of helpset in the classpath.
+   * @return number of users, 0 if the helpset is not in use.
+   */
+  public static int getReferenceCount(final String helpSetName) {
+    synchronized (entries) {
+      final Entry entry = entries.get(helpSetName);
+      return entry == null ? 0 : entry.references;
+    }
+  }
+
+  private static String getKey(final HelpContentProvider contentProvider, final String helpSetFile) {
+    // for helpsets in the classpath, this is the name of the helpset
+    return contentProvider.getName() + "/" + helpSetFile;
+  }
+
+  private static Entry getEntry(final HelpSet helpSet) {
+    synchronized (entries) {
+      for (final Entry entry : entries.values()) {
+        if (entry.helpSet == helpSet) {
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Registered helpset along with its users and shared caches.
+   */
+  private static class Entry {
+
+    private final String key;
+
+    private final HelpContentProvider contentProvider;
+
+    private final String helpSetFile;
+
+    private final HelpDocumentCache documentCache = new HelpDocumentCache();
+
+    /** Number of users, guarded by the registry lock. */
+    private int references = 0;
+
+    /** Loaded helpset, guarded by this entry's lock while loading. */
+    private volatile HelpSet helpSet;
+
+    public Entry(final String key, final HelpContentProvider contentProvider, final String helpSetFile) {
+      this.key = key;
+      this.contentProvider = contentProvider;
+      this.helpSetFile = helpSetFile;
+    }
+
+    public synchronized HelpSet getHelpSet() throws Exception {
+      if (this.helpSet == null) {
+        this.helpSet = new HelpSet(this.contentProvider, this.helpSetFile);
+      }
+      return this.helpSet;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a fully loaded HelpSet - title, home ID, map, view configs and parsed TOC/index items - along
+ * with checksums of all XML sources it was created from. Loading a valid snapshot avoids parsing the XML sources
+ * again on every start.
+ */
+public class HelpSetSnapshot {
+
+  /** File suffix for snapshot files. */
+  public static final String FILE_SUFFIX = ".hss";
+
+  private static final int MAGIC = 0x48535353;
+
+  private static final int VERSION = 3;
+
+  private final String title;
+
+  private final String homeID;
+
+  private final String mapLocation;
+
+  private final HelpMapper helpMapper;
+
+  private final List<HelpSet.ViewConfig> views;
+
+  private final List<SubHelpSet> subHelpSets;
+
+  /**
+   * Creates a new instance of HelpSetSnapshot with the given content of a helpset.
+   *
+   * @param title title.
+   * @param homeID home ID.
+   * @param mapLocation location of map.
+   * @param helpMapper help mapper.
+   * @param views views, including the items of TOC and index views.
+   * @param subHelpSets references to sub-helpsets.
+   */
+  HelpSetSnapshot(final String title,
+                          final String homeID,
+                          final String mapLocation,
+                          final HelpMapper helpMapper,
+                          final List<HelpSet.ViewConfig> views,
+                          final List<SubHelpSet> subHelpSets) {
+    this.title = title;
+    this.homeID = homeID;
+    this.mapLocation = mapLocation;
+    this.helpMapper = helpMapper;
+    this.views = views;
+    this.subHelpSets = subHelpSets;
+  }
+
+  /**
+   * Returns the snapshot file for the given helpset in the given directory.
+   *
+   * @param directory snapshot directory.
+   * @param helpSetName name of helpset.
+   * @return snapshot file.
+   */
+  public static File getSnapshotFile(final File directory, final String helpSetName) {
+    final StringBuilder fileName = new StringBuilder();
+    for (final char ch : helpSetName.toCharArray()) {
+      fileName.append(Character.isLetterOrDigit(ch) || ch == '.' || ch == '-' ? ch : '_');
+    }
+    return new File(directory, fileName.append(FILE_SUFFIX).toString());
+  }
+
+  /**
+   * Loads the snapshot from the given file if it exists and was created from the current sources of the helpset.
+   *
+   * @param file snapshot file.
+   * @param helpSetFile path of the helpset file, relative to the helpset root.
+   * @param helpSet helpset being created, used to read its sources.
+   * @return snapshot, or null if there is no usable snapshot.
+   * @throws IOException on error reading an existing snapshot, e.g. if it is corrupt.
+   */
+  public static HelpSetSnapshot load(final File file, final String helpSetFile, final HelpSet helpSet) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      // sources are checked first, the rest of the snapshot is only read if it is still valid
+      final int sourceCount = PrecompiledHelpPage.readNumber(in);
+      for (int i = 0; i < sourceCount; i++) {
+        final String source = PrecompiledHelpPage.readString(in);
+        final long checksum = in.readLong();
+        if (i == 0 && !source.equals(helpSetFile) || checksum != getChecksum(helpSet.getHelpInputStream(source))) {
+          return null;
+        }
+      }
+      return read(in, helpSet.getContentProvider());
+    } catch (final EOFException ex) {
+      throw new IOException("Truncated helpset snapshot", ex);
+    }
+  }
+
+  private static HelpSetSnapshot read(final DataInputStream in, final HelpContentProvider contentProvider) throws IOException {
+    final String title = PrecompiledHelpPage.readNullableString(in);
+    final String homeID = PrecompiledHelpPage.readNullableString(in);
+    final String mapLocation = PrecompiledHelpPage.readNullableString(in);
+    final int mapSize = PrecompiledHelpPage.readNumber(in);
+    final Map<String, String> map = new HashMap<>(mapSize * 4 / 3 + 1);
+    for (int i = 0; i < mapSize; i++) {
+      map.put(PrecompiledHelpPage.readNullableString(in), PrecompiledHelpPage.readNullableString(in));
+    }
+    final int viewCount = PrecompiledHelpPage.readNumber(in);
+    final List<HelpSet.ViewConfig> views = new ArrayList<>(viewCount);
+    for (int i = 0; i < viewCount; i++) {
+      final String name = PrecompiledHelpPage.readNullableString(in);
+      final String label = PrecompiledHelpPage.readNullableString(in);
+      final String data = PrecompiledHelpPage.readNullableString(in);
+      final HelpOverviewItems items = in.readBoolean() ? HelpOverviewItems.read(in) : null;
+      views.add(new HelpSet.ViewConfig(name, label, data, items));
+    }
+    final int subHelpSetCount = PrecompiledHelpPage.readNumber(in);
+    final List<SubHelpSet> subHelpSets = new ArrayList<>(subHelpSetCount);
+    for (int i = 0; i < subHelpSetCount; i++) {
+      final String location = PrecompiledHelpPage.readString(in);
+      subHelpSets.add(new SubHelpSet(contentProvider, location, PrecompiledHelpPage.readString(in)));
+    }
+    return new HelpSetSnapshot(title,
+                               homeID,
+                               mapLocation,
+                               new HelpMapper(map),
+                               Collections.unmodifiableList(views),
+                               Collections.unmodifiableList(subHelpSets));
+  }
+
+  /**
+   * Writes a snapshot of the given, fully loaded helpset to the given file.
+   *
+   * @param file snapshot file.
+   * @param helpSetFile path of the helpset file, relative to the helpset root.
+   * @param helpSet loaded helpset.
+   * @throws IOException on error reading the helpset sources or writing the snapshot.
+   */
+  public static void save(final File file, final String helpSetFile, final HelpSet helpSet) throws IOException {
+    // checksums of all sources, the helpset itself first
+    final Map<String, Long> checksums = new LinkedHashMap<>();
+    checksums.put(helpSetFile, getChecksum(helpSet.getHelpInputStream(helpSetFile)));
+    checksums.put(helpSet.getMapLocation(), getChecksum(helpSet.getHelpInputStream(helpSet.getMapLocation())));
+    for (final HelpSet.ViewConfig view : helpSet.getViews()) {
+      if (view.getData() != null) {
+        checksums.put(view.getData(), getChecksum(helpSet.getHelpInputStream(view.getData())));
+      }
+    }
+    // titles of sub-helpsets might have been read from their helpset files, their content has own snapshots
+    for (final SubHelpSet subHelpSet : helpSet.getSubHelpSets()) {
+      checksums.put(subHelpSet.getLocation(), getChecksum(helpSet.getHelpInputStream(subHelpSet.getLocation())));
+    }
+    // write to a temporary file first, other processes might read the snapshot at the same time
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create snapshot directory " + directory);
+    }
+    final File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        PrecompiledHelpPage.writeNumber(out, checksums.size());
+        for (final Map.Entry<String, Long> checksum : checksums.entrySet()) {
+          PrecompiledHelpPage.writeString(out, checksum.getKey());
+          out.writeLong(checksum.getValue());
+        }
+        write(out, helpSet);
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  private static void write(final DataOutputStream out, final HelpSet helpSet) throws IOException {
+    PrecompiledHelpPage.writeNullableString(out, helpSet.getTitle());
+    PrecompiledHelpPage.writeNullableString(out, helpSet.getHomeID());
+    PrecompiledHelpPage.writeNullableString(out, helpSet.getMapLocation());
+    final HelpMapper helpMapper = helpSet.getHelpMapper();
+    PrecompiledHelpPage.writeNumber(out, helpMapper.getTargetCount());
+    for (int entry = 0; entry < helpMapper.getTargetCount(); entry++) {
+      PrecompiledHelpPage.writeNullableString(out, helpMapper.getTarget(entry));
+      PrecompiledHelpPage.writeNullableString(out, helpMapper.getURL(entry));
+    }
+    PrecompiledHelpPage.writeNumber(out, helpSet.getViews().size());
+    for (final HelpSet.ViewConfig view : helpSet.getViews()) {
+      PrecompiledHelpPage.writeNullableString(out, view.getName());
+      PrecompiledHelpPage.writeNullableString(out, view.getLabel());
+      PrecompiledHelpPage.writeNullableString(out, view.getData());
+      out.writeBoolean(view.getOverviewItems() != null);
+      if (view.getOverviewItems() != null) {
+        view.getOverviewItems().write(out);
+      }
+    }
+    PrecompiledHelpPage.writeNumber(out, helpSet.getSubHelpSets().size());
+    for (final SubHelpSet subHelpSet : helpSet.getSubHelpSets()) {
+      PrecompiledHelpPage.writeString(out, subHelpSet.getLocation());
+      PrecompiledHelpPage.writeString(out, subHelpSet.getTitle());
+    }
+  }
+
+  /**
+   * Returns the CRC32 checksum of the given stream's content and closes the stream.
+   *
+   * @param is stream, may be null.
+   * @return checksum, or -1 if the stream is null.
+   * @throws IOException on error reading.
+   */
+  private static long getChecksum(final InputStream is) throws IOException {
+    if (is == null) {
+      return -1;
+    }
+    try (InputStream in = is) {
+      final CRC32 crc = new CRC32();
+      final byte[] buffer = new byte[65536];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        crc.update(buffer, 0, read);
+      }
+      return crc.getValue();
+    }
+  }
+
+  /**
+   * Returns the title of the helpset.
+   *
+   * @return title.
+   */
+  public String getTitle() {
+    return this.title;
+  }
+
+  /**
+   * Returns the home ID of the helpset.
+   *
+   * @return home ID.
+   */
+  public String getHomeID() {
+    return this.homeID;
+  }
+
+  /**
+   * Returns the location of the map of the helpset.
+   *
+   * @return map location.
+   */
+  public String getMapLocation() {
+    return this.mapLocation;
+  }
+
+  /**
+   * Returns the help mapper of the helpset.
+   *
+   * @return help mapper.
+   */
+  public HelpMapper getHelpMapper() {
+    return this.helpMapper;
+  }
+
+  /**
+   * Returns the views of the helpset, including the items of TOC and index views.
+   *
+   * @return views.
+   */
+  public List<HelpSet.ViewConfig> getViews() {
+    return this.views;
+  }
+
+  /**
+   * Returns the references to sub-helpsets of the helpset.
+   *
+   * @return sub-helpsets.
+   */
+  public List<SubHelpSet> getSubHelpSets() {
+    return this.subHelpSets;
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Watches the directory of a helpset for changed files, e.g. while technical writers preview their changes in the
+ * running application. After a change, the helpset is reloaded in the background - only changed map, TOC and index
+ * files are parsed again - and the listener is informed on the EDT, e.g. to update a HelpView with HelpView.reload.
+ */
+public class HelpSetWatcher implements Closeable {
+
+  /** Time in milliseconds without further changes before the helpset is reloaded - files are often saved in steps. */
+  private static final long QUIET_PERIOD = 300;
+
+  private final Path directory;
+
+  private final Listener listener;
+
+  private final WatchService watchService;
+
+  /** Watched directories by their key - only used by the watcher thread after construction. */
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+  private final Thread watcherThread;
+
+  private volatile HelpSet helpSet;
+
+  /** Has the last reload failed? Then the next reload is only tried after the next change. */
+  private boolean failed;
+
+  /**
+   * Creates a new instance of HelpSetWatcher and starts watching the directory of the given helpset, including
+   * all its subdirectories.
+   *
+   * @param helpSet helpset provided by a DirectoryHelpContentProvider.
+   * @param listener listener informed about every reloaded helpset.
+   * @throws IOException on error registering the directories.
+   */
+  public HelpSetWatcher(final HelpSet helpSet, final Listener listener) throws IOException {
+    if (!(helpSet.getContentProvider() instanceof DirectoryHelpContentProvider)) {
+      throw new IllegalArgumentException("Only helpsets in a directory can be watched, not " + helpSet.getContentProvider().getName());
+    }
+    this.helpSet = helpSet;
+    this.listener = listener;
+    this.directory = ((DirectoryHelpContentProvider) helpSet.getContentProvider()).getDirectory();
+    this.watchService = this.directory.getFileSystem().newWatchService();
+    registerAll(this.directory);
+    this.watcherThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        watch();
+      }
+    }, "HelpSetWatcher");
+    this.watcherThread.setDaemon(true);
+    this.watcherThread.start();
+  }
+
+  /**
+   * Returns the most recently loaded helpset.
+   *
+   * @return helpset.
+   */
+  public HelpSet getHelpSet() {
+    return this.helpSet;
+  }
+
+  /**
+   * Stops watching.
+   */
+  @Override
+  public void close() throws IOException {
+    this.watcherThread.interrupt();
+    this.watchService.close();
+  }
+
+  private void registerAll(final Path start) throws IOException {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+        final WatchKey key = dir.register(HelpSetWatcher.this.watchService,
+                                          StandardWatchEventKinds.ENTRY_CREATE,
+                                          StandardWatchEventKinds.ENTRY_DELETE,
+                                          StandardWatchEventKinds.ENTRY_MODIFY);
+        HelpSetWatcher.this.watchedDirectories.put(key, dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void watch() {
+    final Set<String> changedPaths = new LinkedHashSet<>();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        // wait for the first change, then collect further changes until the files are quiet for a moment
+        final WatchKey key = changedPaths.isEmpty() || this.failed
+            ? this.watchService.take()
+            : this.watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+        if (key == null) {
+          // after a failure, the changes are kept for the next attempt
+          if (reload(changedPaths)) {
+            changedPaths.clear();
+          }
+          continue;
+        }
+        final Path dir = this.watchedDirectories.get(key);
+        for (final WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+            // changes have been lost, so load everything again
+            changedPaths.add(this.helpSet.getHelpSetFile());
+            continue;
+          }
+          final Path changed = dir.resolve((Path) event.context());
+          if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+            try {
+              registerAll(changed);
+            } catch (final IOException ex) {
+              ex.printStackTrace();
+            }
+          }
+          String changedPath = this.directory.relativize(changed).toString().replace(File.separatorChar, '/');
+          if (changedPath.endsWith(CompressedHelpPage.FILE_SUFFIX)) {
+            // a compressed file stands for the file it contains
+            changedPath = changedPath.substring(0, changedPath.length() - CompressedHelpPage.FILE_SUFFIX.length());
+          }
+          changedPaths.add(changedPath);
+        }
+        if (!key.reset()) {
+          this.watchedDirectories.remove(key);
+        }
+        // new changes - try again after the quiet period
+        this.failed = false;
+      }
+    } catch (final InterruptedException | ClosedWatchServiceException ex) {
+      // watcher has been closed
+    }
+  }
+
+  private boolean reload(final Set<String> changedPaths) {
+    final Set<String> paths = Collections.unmodifiableSet(new LinkedHashSet<>(changedPaths));
+    final HelpSet reloadedHelpSet;
+    try {
+      reloadedHelpSet = this.helpSet.reload(paths);
+    } catch (final Exception ex) {
+      // e.g. a file is still being edited - keep the current helpset until the next change
+      System.err.println("Failed to reload helpset after changes of " + paths);
+      ex.printStackTrace();
+      this.failed = true;
+      return false;
+    }
+    this.failed = false;
+    this.helpSet = reloadedHelpSet;
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        HelpSetWatcher.this.listener.helpSetReloaded(reloadedHelpSet, paths);
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Listener informed about reloaded helpsets.
+   */
+  public interface Listener {
+
+    /**
+     * Called on the EDT after the watched helpset has been reloaded.
+     *
+     * @param helpSet reloaded helpset.
+     * @param changedPaths paths of all changed files, relative to the root of the helpset.
+     */
+    void helpSetReloaded(HelpSet helpSet, Set<String> changedPaths);
+  }
+}
@@ -32,6 +32,8 @@ For more information, please refer to <http://unlicense.org/>
 
 package com.hubersn.ui.swing.helpview;
 
+import java.io.InputStream;
+
 import javax.swing.ImageIcon;
 
 /**
@@ -44,6 +46,9 @@ public class HelpTOCView extends HelpAbstractOverviewView {
   /** Name from view config represented by this implementation. */
   public static final String VIEW_NAME = "TOC";
 
+  /** Name of the XML tag representing an item in the view data. */
+  public static final String ITEM_TAG_NAME = "tocitem";
+
   private ImageIcon tocIcon;
 
   public HelpTOCView() {
@@ -57,7 +62,18 @@ public class HelpTOCView extends HelpAbstractOverviewView {
   }
 
   public void createView(final XMLDocument tocXMLDoc) {
-    super.createView(tocXMLDoc, "tocitem");
+    super.createView(tocXMLDoc, ITEM_TAG_NAME);
+    getTree().expandRow(0);
+  }
+
+  @Override
+  public void createView(final InputStream source) throws Exception {
+    createView(HelpOverviewItems.parse(source, ITEM_TAG_NAME));
+  }
+
+  @Override
+  public void createView(final HelpOverviewItems items) {
+    createView(items, true);
     getTree().expandRow(0);
   }
 
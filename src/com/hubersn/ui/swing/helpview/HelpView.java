@@ -39,8 +39,14 @@ import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.ImageIcon;
@@ -50,6 +56,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JToolBar;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 
@@ -72,7 +79,14 @@ public class HelpView extends JPanel {
 
   private JToolBar toolbar;
 
-  private final HelpSet helpSetToShow;
+  private HelpSet helpSetToShow;
+
+  private final HelpDocumentCache documentCache;
+
+  /** TOC and index views by the name of their view config. */
+  private final Map<String, HelpAbstractOverviewView> overviewViews = new HashMap<>();
+
+  private HelpSearchView searchView;
 
   /**
    * Creates a new instance of the HelpView panel.
@@ -81,18 +95,31 @@ public class HelpView extends JPanel {
    * @throws Exception on error.
    */
   public HelpView(final HelpSet helpSetToShow) throws Exception {
+    this(helpSetToShow, new HelpDocumentCache());
+  }
+
+  /**
+   * Creates a new instance of the HelpView panel that uses the given document cache, e.g. shared with other help
+   * views showing the same helpset.
+   *
+   * @param helpSetToShow helpset to show.
+   * @param documentCache cache for loaded documents.
+   * @throws Exception on error.
+   */
+  public HelpView(final HelpSet helpSetToShow, final HelpDocumentCache documentCache) throws Exception {
     super(new BorderLayout());
     this.helpSetToShow = helpSetToShow;
+    this.documentCache = documentCache;
     this.tabbedPane = new JTabbedPane(SwingConstants.TOP);
     this.tabbedPane.setTabLayoutPolicy(JTabbedPane.SCROLL_TAB_LAYOUT);
-    this.contentView = new HelpContentView();
+    this.contentView = new HelpContentView(documentCache);
 
     final List<HelpSet.ViewConfig> views = helpSetToShow.getViews();
     for (final HelpSet.ViewConfig view : views) {
       HelpAbstractOverviewView viewForTab = null;
       if (view.getName().equals(HelpTOCView.VIEW_NAME)) {
         viewForTab = new HelpTOCView();
-        viewForTab.createView(new XMLDocument(helpSetToShow.getHelpInputStream(view.getData())));
+        createOverviewView(viewForTab, view);
         viewForTab.addSelectionListener(new TreeSelectionListener() {
 
           @Override
@@ -101,7 +128,7 @@ public class HelpView extends JPanel {
               Object obj = e.getPath().getLastPathComponent();
               if (obj instanceof HelpAbstractOverviewView.HelpOverviewNode) {
                 HelpAbstractOverviewView.HelpOverviewNode selectedNode = (HelpAbstractOverviewView.HelpOverviewNode) obj;
-                showTarget(selectedNode.getTarget());
+                showTarget(selectedNode);
               }
             }
           }
@@ -113,13 +140,13 @@ public class HelpView extends JPanel {
           @Override
           public void propertyChange(PropertyChangeEvent evt) {
             if (evt.getPropertyName().equals(HelpContentView.PAGE_URL_CHANGED_PROPERTY) && evt.getNewValue() instanceof URL) {
-              localView.tryToSelectURL(helpSetToShow, (URL)evt.getNewValue());
+              localView.tryToSelectURL(HelpView.this.helpSetToShow, (URL)evt.getNewValue());
             }
           }
         });
       } else if (view.getName().equals(HelpIndexView.VIEW_NAME)) {
         viewForTab = new HelpIndexView();
-        viewForTab.createView(new XMLDocument(helpSetToShow.getHelpInputStream(view.getData())));
+        createOverviewView(viewForTab, view);
         viewForTab.addSelectionListener(new TreeSelectionListener() {
 
           @Override
@@ -128,15 +155,16 @@ public class HelpView extends JPanel {
               Object obj = e.getPath().getLastPathComponent();
               if (obj instanceof HelpAbstractOverviewView.HelpOverviewNode) {
                 HelpAbstractOverviewView.HelpOverviewNode selectedNode = (HelpAbstractOverviewView.HelpOverviewNode) obj;
-                showTarget(selectedNode.getTarget());
+                showTarget(selectedNode);
               }
             }
           }
         });
       } else if (view.getName().equals(HelpSearchView.VIEW_NAME)) {
         final HelpSearchView helpSearchView = new HelpSearchView(helpSetToShow);
+        this.searchView = helpSearchView;
         viewForTab = helpSearchView;
-        viewForTab.createView(null);
+        viewForTab.createView((XMLDocument) null);
         viewForTab.addSelectionListener(new TreeSelectionListener() {
 
           @Override
@@ -145,7 +173,8 @@ public class HelpView extends JPanel {
               Object obj = e.getPath().getLastPathComponent();
               if (obj instanceof HelpSearchView.SearchNode) {
                 HelpSearchView.SearchNode searchResult = (HelpSearchView.SearchNode)obj;
-                showTarget(searchResult.getTarget());
+                // the target is looked up in the helpset of the page, it might be mapped by other helpsets as well
+                showTarget(searchResult.getHelpSet() != null ? searchResult.getHelpSet() : HelpView.this.helpSetToShow, searchResult.getTarget(), false);
                 HelpView.this.contentView.clearHighlights();
                 for (int index : searchResult.getMatches()) {
                   HelpView.this.contentView.addHighlight(index, searchResult.getLength(), TEXT_HIGHLIGHT_COLOUR);
@@ -174,7 +203,7 @@ public class HelpView extends JPanel {
       @Override
       public void actionPerformed(ActionEvent e) {
         try {
-          HelpView.this.contentView.setPage(helpSetToShow.getHelpHomeURL());
+          HelpView.this.contentView.setPage(HelpView.this.helpSetToShow.getHelpHomeURL());
         } catch (IOException ex) {
           // only log for now - won't happen on consistent helpsets
           ex.printStackTrace();
@@ -189,6 +218,137 @@ public class HelpView extends JPanel {
     this.sp.setOneTouchExpandable(true);
     this.sp.setResizeWeight(0.0d);
     add(this.sp, BorderLayout.CENTER);
+    // find in page also available while the focus is inside the TOC/index/search views
+    getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(HelpContentView.FIND_KEY_STROKE, "find");
+    getActionMap().put("find", this.contentView.getFindAction());
+  }
+
+  private void createOverviewView(final HelpAbstractOverviewView viewForTab, final HelpSet.ViewConfig view) throws Exception {
+    if (view.getOverviewItems() != null) {
+      // already parsed while loading the HelpSet
+      viewForTab.createView(view.getOverviewItems());
+    } else {
+      try (InputStream is = this.helpSetToShow.getHelpInputStream(view.getData())) {
+        viewForTab.createView(is);
+      }
+    }
+    // merged views - the branches of sub-helpsets are loaded on expansion
+    viewForTab.addSubHelpSets(this.helpSetToShow.getSubHelpSets(), view.getName());
+    this.overviewViews.put(view.getName(), viewForTab);
+  }
+
+  /**
+   * Switches to the given reloaded version of the shown helpset, e.g. from a HelpSetWatcher - only TOC and index
+   * views whose items have changed are created again, and only changed pages are removed from the caches. If the
+   * shown page has changed, it is loaded again.
+   *
+   * @param reloadedHelpSet reloaded helpset.
+   * @param changedPaths paths of changed files, relative to the root of the helpset.
+   */
+  public void reload(final HelpSet reloadedHelpSet, final Set<String> changedPaths) {
+    final HelpSet previousHelpSet = this.helpSetToShow;
+    this.helpSetToShow = reloadedHelpSet;
+    for (final Map.Entry<String, HelpAbstractOverviewView> overviewView : this.overviewViews.entrySet()) {
+      final HelpOverviewItems items = reloadedHelpSet.getOverviewItems(overviewView.getKey());
+      if (items != null
+          && (items != previousHelpSet.getOverviewItems(overviewView.getKey())
+              || reloadedHelpSet.getSubHelpSets() != previousHelpSet.getSubHelpSets())) {
+        overviewView.getValue().createView(items);
+        overviewView.getValue().addSubHelpSets(reloadedHelpSet.getSubHelpSets(), overviewView.getKey());
+      }
+    }
+    if (this.searchView != null) {
+      this.searchView.setHelpSet(reloadedHelpSet);
+    }
+    final URL shownPage = this.contentView.getPageURL();
+    boolean shownPageChanged = false;
+    if (changedPaths.contains(reloadedHelpSet.getHelpSetFile())) {
+      // everything might have changed
+      this.documentCache.clear();
+      HelpImageCache.clear();
+      shownPageChanged = true;
+    } else {
+      for (final String changedPath : changedPaths) {
+        // a changed precompiled page invalidates its page
+        final String pagePath = changedPath.endsWith(PrecompiledHelpPage.FILE_SUFFIX)
+            ? changedPath.substring(0, changedPath.length() - PrecompiledHelpPage.FILE_SUFFIX.length())
+            : changedPath;
+        final URL changedURL = getChangedURL(reloadedHelpSet, pagePath);
+        if (changedURL != null) {
+          this.documentCache.remove(changedURL);
+          HelpImageCache.remove(changedURL);
+          shownPageChanged |= shownPage != null && changedURL.sameFile(shownPage);
+        }
+      }
+    }
+    if (shownPageChanged) {
+      try {
+        this.contentView.reloadPage();
+      } catch (final IOException ex) {
+        // page might have been deleted
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Returns the URL of the given changed file - deleted files are resolved in the directory of the helpset, so their
+   * cached content can be removed as well.
+   */
+  private static URL getChangedURL(final HelpSet reloadedHelpSet, final String path) {
+    final HelpContentProvider contentProvider = reloadedHelpSet.getContentProvider();
+    final URL url = contentProvider.getURL(path);
+    if (url == null && contentProvider instanceof DirectoryHelpContentProvider) {
+      return ((DirectoryHelpContentProvider) contentProvider).getLocationURL(path);
+    }
+    return url;
+  }
+
+  private void showTarget(final HelpAbstractOverviewView.HelpOverviewNode selectedNode) {
+    final SubHelpSet subHelpSet = selectedNode.getSubHelpSet();
+    if (subHelpSet == null) {
+      final String target = selectedNode.getTarget();
+      if (target == null || target.isEmpty()) {
+        // e.g. a TOC folder without page
+        return;
+      }
+      // nodes of sub-helpset branches are resolved in their own helpset
+      final HelpSet nodeHelpSet = selectedNode.getHelpSet();
+      showTarget(nodeHelpSet != null ? nodeHelpSet : this.helpSetToShow, target, false);
+      return;
+    }
+    if (subHelpSet.isLoaded()) {
+      showHome(subHelpSet.getHelpSet());
+      return;
+    }
+    // do not block the EDT while the sub-helpset is parsed
+    new SwingWorker<HelpSet, Void>() {
+
+      @Override
+      protected HelpSet doInBackground() {
+        return subHelpSet.getHelpSet();
+      }
+
+      @Override
+      protected void done() {
+        try {
+          showHome(get());
+        } catch (final InterruptedException | ExecutionException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }.execute();
+  }
+
+  private void showHome(final HelpSet loadedHelpSet) {
+    if (loadedHelpSet != null) {
+      try {
+        this.contentView.setPage(loadedHelpSet.getHelpHomeURL());
+      } catch (final IOException ex) {
+        // only log for now - won't happen on consistent helpsets
+        ex.printStackTrace();
+      }
+    }
   }
 
   /**
@@ -212,24 +372,53 @@ public class HelpView extends JPanel {
     btn.setFocusable(false);
   }
 
+  /**
+   * Writes the page history of the content view to the given stream, see HelpContentView.saveHistory.
+   *
+   * @param os target stream.
+   * @throws IOException on error.
+   */
+  public void saveHistory(final OutputStream os) throws IOException {
+    this.contentView.saveHistory(os);
+  }
+
+  /**
+   * Restores the page history of the content view from the given stream, see HelpContentView.restoreHistory.
+   *
+   * @param is source stream.
+   * @throws IOException on error.
+   */
+  public void restoreHistory(final InputStream is) throws IOException {
+    this.contentView.restoreHistory(is);
+  }
+
   /**
    * Shows the targetId in this help view from the associated HelpSet.
    * 
    * @param targetId target Help ID to show.
    */
   public void showTarget(final String targetId) {
+    showTarget(this.helpSetToShow, targetId, true);
+  }
+
+  private void showTarget(final HelpSet helpSet, final String targetId, final boolean loadSubHelpSets) {
     try {
       if (targetId == null) {
         this.contentView.setPage(this.helpSetToShow.getHelpHomeURL());
         return;
       }
-      HelpView.this.contentView.setPage(this.helpSetToShow.getMappedHelpURL(targetId));
-      String lastRef = this.helpSetToShow.getLastRef();
-      HelpView.this.contentView.scrollToReference(lastRef);
+      final HelpSet mappingHelpSet = helpSet.getHelpSetForId(targetId, loadSubHelpSets);
+      if (mappingHelpSet == null) {
+        System.err.println("Target not mapped: " + targetId);
+        return;
+      }
+      final HelpLocation location = mappingHelpSet.getHelpLocation(mappingHelpSet.getHelpMapper().getURL(targetId));
+      HelpView.this.contentView.setPage(location.getURL());
+      HelpView.this.contentView.scrollToReference(location.getReference());
     } catch (final Exception ex) {
       // only log for now - won't happen on consistent helpsets
       System.err.println("Target failed: " + targetId);
-      System.err.println("URL failed: " + this.helpSetToShow.getMappedHelpURL(targetId));
+      System.err.println("URL failed: " + helpSet.getHelpSetForId(targetId, false).getMappedHelpURLString(targetId));
       ex.printStackTrace();
     }
   }
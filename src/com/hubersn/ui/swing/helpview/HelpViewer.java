@@ -33,6 +33,13 @@ For more information, please refer to <http://unlicense.org/>
 package com.hubersn.ui.swing.helpview;
 
 import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -50,24 +57,112 @@ public class HelpViewer {
 
   private final HelpView helpView;
 
-  private final HelpSet helpSet;
+  private HelpSet helpSet;
+
+  /** Helpset acquired from the HelpSetRegistry by this viewer and not yet released, null if there is none. */
+  private HelpSet acquiredHelpSet;
+
+  private HelpSetWatcher watcher;
 
   /**
-   * Creates a new instance of HelpViewer.
+   * Creates a new instance of HelpViewer. The helpset is taken from the HelpSetRegistry, i.e. it is only loaded if
+   * no other viewer shows it, and released when this viewer is disposed.
    *
    * @param helpSetName name of helpset.
    * @throws Exception on error, e.g. when parsing fails or helpset is not found.
    */
   public HelpViewer(final String helpSetName) throws Exception {
     // load and parse helpset - will throw an Exception if anything goes wrong
-    this.helpSet = new HelpSet(helpSetName);
-    this.helpViewerFrame = new JFrame(this.helpSet.getFrameTitle());
-    this.helpView = new HelpView(this.helpSet);
+    this(HelpSetRegistry.acquire(helpSetName), true);
+  }
+
+  /**
+   * Creates a new instance of HelpViewer for an already loaded helpset - allows to load the helpset outside of
+   * the EDT and only create the UI on the EDT.
+   *
+   * @param helpSet helpset to show.
+   * @throws Exception on error, e.g. when view data cannot be parsed.
+   */
+  public HelpViewer(final HelpSet helpSet) throws Exception {
+    this(helpSet, false);
+  }
+
+  private HelpViewer(final HelpSet helpSet, final boolean helpSetAcquired) throws Exception {
+    this.helpSet = helpSet;
+    this.acquiredHelpSet = helpSetAcquired ? helpSet : null;
+    try {
+      this.helpViewerFrame = new JFrame(this.helpSet.getFrameTitle());
+      // documents are shared with other viewers of the same helpset if it is in the registry
+      final HelpDocumentCache sharedDocumentCache = HelpSetRegistry.getDocumentCache(this.helpSet);
+      this.helpView = sharedDocumentCache == null ? new HelpView(this.helpSet) : new HelpView(this.helpSet, sharedDocumentCache);
+    } catch (final Exception ex) {
+      releaseHelpSet();
+      throw ex;
+    }
     this.mainPanel.add(this.helpView.getToolBar(), BorderLayout.NORTH);
     this.mainPanel.add(this.helpView, BorderLayout.CENTER);
     this.helpViewerFrame.setContentPane(this.mainPanel);
     this.helpViewerFrame.pack();
     this.helpViewerFrame.setSize(1024, 768);
+    this.helpViewerFrame.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(final WindowEvent e) {
+        stopWatching();
+        releaseHelpSet();
+      }
+    });
+  }
+
+  /**
+   * Closes this help viewer for good - it cannot be shown again, and its helpset is released if it was taken from
+   * the HelpSetRegistry. A helpset released by all its users is closed, e.g. an archive it is read from.
+   */
+  public void dispose() {
+    stopWatching();
+    releaseHelpSet();
+    this.helpViewerFrame.dispose();
+  }
+
+  private void releaseHelpSet() {
+    if (this.acquiredHelpSet != null) {
+      HelpSetRegistry.release(this.acquiredHelpSet);
+      this.acquiredHelpSet = null;
+    }
+  }
+
+  /**
+   * Starts watching the helpset directory - changed files are shown without restarting, e.g. to preview help
+   * while editing it. Only possible for helpsets in a directory.
+   *
+   * @throws IOException on error watching the directory.
+   */
+  public void startWatching() throws IOException {
+    if (this.watcher != null) {
+      return;
+    }
+    this.watcher = new HelpSetWatcher(this.helpSet, new HelpSetWatcher.Listener() {
+      @Override
+      public void helpSetReloaded(final HelpSet reloadedHelpSet, final Set<String> changedPaths) {
+        if (HelpViewer.this.watcher == null) {
+          // stopped in the meantime
+          return;
+        }
+        HelpViewer.this.helpSet = reloadedHelpSet;
+        HelpViewer.this.helpViewerFrame.setTitle(reloadedHelpSet.getFrameTitle());
+        HelpViewer.this.helpView.reload(reloadedHelpSet, changedPaths);
+      }
+    });
+  }
+
+  private void stopWatching() {
+    if (this.watcher != null) {
+      try {
+        this.watcher.close();
+      } catch (final IOException ex) {
+        ex.printStackTrace();
+      }
+      this.watcher = null;
+    }
   }
 
   /**
@@ -103,21 +198,37 @@ public class HelpViewer {
   }
 
   /**
-   * Starts the help viewer with the given helpset as first and only argument.
+   * Starts the help viewer with the given helpset as last argument - a helpset file in the file system, a helpset
+   * inside a zip or jar archive ("archive.jar!/help/helpset.hs") or a helpset in the classpath. With "-watch" as
+   * first argument, changes of a helpset in the file system are shown immediately.
    *
    * @param args
    */
   public static void main(final String[] args) {
-    if (args == null || args.length != 1) {
-      System.err.println("HelpViewer needs the path to a helpset as argument.");
+    final boolean watch = args != null && args.length == 2 && "-watch".equals(args[0]);
+    if (args == null || args.length != (watch ? 2 : 1)) {
+      System.err.println("HelpViewer needs the path to a helpset as argument, optionally preceded by -watch.");
       System.exit(1);
     }
+    // parse the helpset outside of the EDT, only the UI is created on the EDT
+    final HelpSet helpSet;
+    try {
+      helpSet = loadHelpSet(args[args.length - 1]);
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      System.exit(1);
+      return;
+    }
     SwingUtilities.invokeLater(new Runnable() {
       public void run() {
         final HelpViewer f;
         try {
-          f = new HelpViewer(args[0]);
+          // released and closed with the frame
+          f = new HelpViewer(helpSet, true);
           f.helpViewerFrame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+          if (watch) {
+            f.startWatching();
+          }
           f.setVisible(true);
         } catch (Exception ex) {
           ex.printStackTrace();
@@ -127,4 +238,18 @@ public class HelpViewer {
     });
   }
 
+  private static HelpSet loadHelpSet(final String name) throws Exception {
+    final int indexOfSeparator = name.indexOf("!/");
+    if (indexOfSeparator > 0) {
+      final String entry = name.substring(indexOfSeparator + 1);
+      final int indexOfSlash = entry.lastIndexOf('/');
+      final Path archive = Paths.get(name.substring(0, indexOfSeparator));
+      return HelpSetRegistry.acquire(new ArchiveHelpContentProvider(archive, entry.substring(0, indexOfSlash + 1)), entry.substring(indexOfSlash + 1));
+    }
+    final Path file = Paths.get(name);
+    if (Files.isRegularFile(file)) {
+      return HelpSetRegistry.acquire(new DirectoryHelpContentProvider(file.toAbsolutePath().getParent()), file.getFileName().toString());
+    }
+    return HelpSetRegistry.acquire(name);
+  }
 }
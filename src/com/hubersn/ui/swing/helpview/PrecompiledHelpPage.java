@@ -0,0 +1,687 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.ChangedCharSetException;
+import javax.swing.text.DefaultStyledDocument.ElementSpec;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.CSS;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.StyleSheet;
+import javax.swing.text.html.parser.ParserDelegator;
+
+/**
+ * Precompiled help pages - the element structure, attributes and text of a parsed HTML page are stored in a compact
+ * binary form next to the page (page.html becomes page.html.hpc), so a page can be shown without running the HTML
+ * parser. The main method is the build-time tool to create the precompiled pages.
+ * <p>
+ * A precompiled page is only used if it has been written by the same format version, and - for pages in the file
+ * system - if it is not older than its HTML page. In all other cases, the HTML page is parsed as usual.
+ */
+public class PrecompiledHelpPage {
+
+  /** File name suffix of precompiled pages, appended to the file name of the HTML page. */
+  public static final String FILE_SUFFIX = ".hpc";
+
+  private static final int MAGIC = 0x48504347;
+
+  private static final int VERSION = 1;
+
+  private static final int KEY_NAME = 0;
+
+  private static final int KEY_TAG = 1;
+
+  private static final int KEY_HTML_ATTRIBUTE = 2;
+
+  private static final int KEY_CSS_ATTRIBUTE = 3;
+
+  private static final int KEY_STRING = 4;
+
+  private static final int VALUE_STRING = 0;
+
+  private static final int VALUE_TAG = 1;
+
+  private static final int VALUE_TRUE = 2;
+
+  private static final int VALUE_FALSE = 3;
+
+  private static final int VALUE_SET = 4;
+
+  private static final int VALUE_CSS = 5;
+
+  private static final int STYLE_RULES = 0;
+
+  private static final int STYLE_LINK = 1;
+
+  private PrecompiledHelpPage() {
+    // no instances
+  }
+
+  /**
+   * Returns the URL of the precompiled form of the page with the given URL (a reference part of the URL is ignored).
+   *
+   * @param url URL of HTML page.
+   * @return URL of precompiled page.
+   * @throws IOException if the URL cannot be constructed.
+   */
+  public static URL getPrecompiledURL(final URL url) throws IOException {
+    // resolved relative to the page, so URLs with their own handler (e.g. into archives) keep it
+    final String path = url.getPath();
+    return new URL(url, path.substring(path.lastIndexOf('/') + 1) + FILE_SUFFIX);
+  }
+
+  /**
+   * Returns the file a file URL points to - a reference (#anchor) is ignored, escaped characters like spaces (%20)
+   * in the URL are decoded.
+   *
+   * @param url file URL.
+   * @return file.
+   */
+  static File getFile(final URL url) {
+    try {
+      // a URI with fragment is not accepted for files
+      return new File(new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getFile()).toURI());
+    } catch (final URISyntaxException | MalformedURLException | IllegalArgumentException ex) {
+      // not a valid URI, e.g. created from a path with unescaped spaces - escaped characters are decoded anyway
+      try {
+        return new File(URLDecoder.decode(url.getPath().replace("+", "%2B"), "UTF-8"));
+      } catch (final UnsupportedEncodingException | IllegalArgumentException decodeEx) {
+        return new File(url.getPath());
+      }
+    }
+  }
+
+  /**
+   * Fills the given document from the precompiled form of the page with the given URL, if there is a usable one.
+   *
+   * @param url URL of HTML page.
+   * @param doc empty document to fill.
+   * @return true if the document has been filled, false if there is no usable precompiled page.
+   * @throws IOException on error reading an existing precompiled page, e.g. if it is corrupt.
+   */
+  public static boolean load(final URL url, final HelpDocument doc) throws IOException {
+    final URL precompiledURL = getPrecompiledURL(url);
+    if ("file".equals(precompiledURL.getProtocol())) {
+      final File precompiledFile = getFile(precompiledURL);
+      final File htmlFile = getFile(url);
+      if (!precompiledFile.isFile() || htmlFile.lastModified() > precompiledFile.lastModified()) {
+        return false;
+      }
+    }
+    final InputStream is;
+    try {
+      is = precompiledURL.openStream();
+    } catch (final FileNotFoundException ex) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return false;
+      }
+      read(in, url, doc);
+      return true;
+    } catch (final EOFException ex) {
+      throw new IOException("Truncated precompiled page", ex);
+    }
+  }
+
+  private static void read(final DataInputStream in, final URL url, final HelpDocument doc) throws IOException {
+    final StyleSheet styleSheet = doc.getStyleSheet();
+    final String title = readNullableString(in);
+    final String baseHref = readNullableString(in);
+    final URL base = baseHref == null ? url : new URL(url, baseHref);
+    doc.setBase(base);
+    doc.putProperty(Document.StreamDescriptionProperty, url);
+    if (title != null) {
+      doc.putProperty(Document.TitleProperty, title);
+    }
+    final int styleCount = readNumber(in);
+    for (int i = 0; i < styleCount; i++) {
+      final int kind = in.readByte();
+      final String style = readString(in);
+      if (kind == STYLE_RULES) {
+        styleSheet.addRule(style);
+      } else {
+        try {
+          styleSheet.importStyleSheet(new URL(base, style));
+        } catch (final IOException ex) {
+          System.err.println("Invalid style sheet link " + style + ": " + ex.getMessage());
+        }
+      }
+    }
+    final String[] strings = new String[readNumber(in)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString(in);
+    }
+    final AttributeSet[] sets = new AttributeSet[readNumber(in)];
+    for (int i = 0; i < sets.length; i++) {
+      sets[i] = readAttributeSet(in, strings, sets, styleSheet);
+    }
+    final char[] text = readString(in).toCharArray();
+    final ElementSpec[] specs = new ElementSpec[readNumber(in)];
+    int offset = 0;
+    for (int i = 0; i < specs.length; i++) {
+      final short type = in.readByte();
+      final int setIndex = readNumber(in) - 1;
+      final AttributeSet attr = setIndex < 0 ? null : sets[setIndex];
+      if (type == ElementSpec.ContentType) {
+        final int length = readNumber(in);
+        specs[i] = new ElementSpec(attr, ElementSpec.ContentType, Arrays.copyOfRange(text, offset, offset + length), 0, length);
+        offset += length;
+      } else {
+        specs[i] = new ElementSpec(attr, type);
+      }
+    }
+    if (offset != text.length) {
+      throw new IOException("Corrupt precompiled page");
+    }
+    // the last leaf only holds the implicit newline at the end of the document and is created by the document itself
+    int lastContent = specs.length - 1;
+    while (lastContent > 0 && specs[lastContent].getType() != ElementSpec.ContentType) {
+      lastContent--;
+    }
+    AttributeSet endAttributes = null;
+    ElementSpec[] contentSpecs = specs;
+    if (lastContent > 0 && specs[lastContent].getLength() == 0) {
+      endAttributes = specs[lastContent].getAttributes();
+      contentSpecs = new ElementSpec[specs.length - 1];
+      System.arraycopy(specs, 0, contentSpecs, 0, lastContent);
+      System.arraycopy(specs, lastContent + 1, contentSpecs, lastContent, specs.length - lastContent - 1);
+    }
+    try {
+      doc.createFromElementSpecs(contentSpecs, endAttributes);
+    } catch (final BadLocationException ex) {
+      throw new IOException("Corrupt precompiled page", ex);
+    }
+  }
+
+  private static AttributeSet readAttributeSet(final DataInputStream in,
+                                               final String[] strings,
+                                               final AttributeSet[] sets,
+                                               final StyleSheet styleSheet) throws IOException {
+    final MutableAttributeSet attr = new SimpleAttributeSet();
+    final int count = readNumber(in);
+    for (int i = 0; i < count; i++) {
+      final int keyKind = in.readByte();
+      final String keyName = strings[readNumber(in)];
+      final Object key;
+      switch (keyKind) {
+        case KEY_NAME:
+          key = StyleConstants.NameAttribute;
+          break;
+        case KEY_TAG:
+          key = getTag(keyName);
+          break;
+        case KEY_HTML_ATTRIBUTE:
+          key = HTML.getAttributeKey(keyName);
+          break;
+        case KEY_CSS_ATTRIBUTE:
+          key = CSS.getAttribute(keyName);
+          break;
+        default:
+          key = keyName;
+          break;
+      }
+      if (key == null) {
+        throw new IOException("Unknown attribute " + keyName);
+      }
+      final int valueKind = in.readByte();
+      switch (valueKind) {
+        case VALUE_STRING:
+          attr.addAttribute(key, strings[readNumber(in)]);
+          break;
+        case VALUE_TAG:
+          attr.addAttribute(key, getTag(strings[readNumber(in)]));
+          break;
+        case VALUE_TRUE:
+          attr.addAttribute(key, Boolean.TRUE);
+          break;
+        case VALUE_FALSE:
+          attr.addAttribute(key, Boolean.FALSE);
+          break;
+        case VALUE_SET:
+          attr.addAttribute(key, sets[readNumber(in)]);
+          break;
+        case VALUE_CSS:
+          styleSheet.addCSSAttribute(attr, (CSS.Attribute) key, strings[readNumber(in)]);
+          break;
+        default:
+          throw new IOException("Corrupt precompiled page");
+      }
+    }
+    return attr;
+  }
+
+  private static HTML.Tag getTag(final String name) {
+    final HTML.Tag tag = HTML.getTag(name);
+    if (tag != null) {
+      return tag;
+    }
+    // tags only used internally by HTMLDocument are not known to HTML.getTag
+    if (HTML.Tag.IMPLIED.toString().equals(name)) {
+      return HTML.Tag.IMPLIED;
+    }
+    if (HTML.Tag.CONTENT.toString().equals(name)) {
+      return HTML.Tag.CONTENT;
+    }
+    if (HTML.Tag.COMMENT.toString().equals(name)) {
+      return HTML.Tag.COMMENT;
+    }
+    return new HTML.UnknownTag(name);
+  }
+
+  static int readNumber(final DataInputStream in) throws IOException {
+    // non-negative numbers with seven bits per byte, the highest bit marks following bytes
+    int number = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      number |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0 && shift < 32);
+    return number;
+  }
+
+  static String readNullableString(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? readString(in) : null;
+  }
+
+  static String readString(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[readNumber(in)];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  /**
+   * Parses the given HTML file and writes its precompiled form next to it.
+   *
+   * @param htmlFile HTML file.
+   * @param defaultCharset charset to use if the page does not declare one.
+   * @throws IOException on error reading or writing, or if the page uses features not supported by precompiled pages
+   *           (e.g. forms).
+   */
+  public static void compile(final File htmlFile, final Charset defaultCharset) throws IOException {
+    final byte[] bytes = Files.readAllBytes(htmlFile.toPath());
+    final HTMLEditorKit kit = new HTMLEditorKit();
+    String html = new String(bytes, defaultCharset);
+    HTMLDocument doc = (HTMLDocument) kit.createDefaultDocument();
+    try {
+      try {
+        kit.read(new StringReader(html), doc, 0);
+      } catch (final ChangedCharSetException ex) {
+        html = new String(bytes, HelpDocument.getCharset(ex, defaultCharset));
+        doc = (HTMLDocument) kit.createDefaultDocument();
+        doc.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+        kit.read(new StringReader(html), doc, 0);
+      }
+    } catch (final BadLocationException ex) {
+      throw new IOException("Cannot parse " + htmlFile, ex);
+    }
+    final HeadCollector head = new HeadCollector();
+    new ParserDelegator().parse(new StringReader(html), head, true);
+    final File precompiledFile = new File(htmlFile.getPath() + FILE_SUFFIX);
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(precompiledFile))) {
+      write(doc, head, os);
+    } catch (final IOException ex) {
+      precompiledFile.delete();
+      throw ex;
+    }
+  }
+
+  private static void write(final HTMLDocument doc, final HeadCollector head, final OutputStream os) throws IOException {
+    final SpecWriter specWriter = new SpecWriter(doc);
+    final Element root = doc.getDefaultRootElement();
+    // the root element is not created but only updated, so there is no end tag for it
+    specWriter.addSpec(ElementSpec.StartTagType, root.getAttributes(), 0);
+    for (int i = 0; i < root.getElementCount(); i++) {
+      specWriter.addElement(root.getElement(i));
+    }
+    final DataOutputStream out = new DataOutputStream(os);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    final Object title = doc.getProperty(Document.TitleProperty);
+    writeNullableString(out, title == null ? null : title.toString());
+    writeNullableString(out, head.baseHref);
+    writeNumber(out, head.styleKinds.size());
+    for (int i = 0; i < head.styleKinds.size(); i++) {
+      out.writeByte(head.styleKinds.get(i));
+      writeString(out, head.styles.get(i));
+    }
+    writeNumber(out, specWriter.strings.size());
+    for (final String s : specWriter.strings) {
+      writeString(out, s);
+    }
+    writeNumber(out, specWriter.sets.size());
+    for (final AttributeSet attr : specWriter.sets) {
+      specWriter.writeAttributeSet(out, attr);
+    }
+    try {
+      writeString(out, doc.getText(0, doc.getLength()));
+    } catch (final BadLocationException ex) {
+      // cannot happen, range is taken from the document
+      throw new IOException(ex);
+    }
+    writeNumber(out, specWriter.specCount);
+    specWriter.specs.writeTo(out);
+    out.flush();
+  }
+
+  static void writeNumber(final DataOutputStream out, final int number) throws IOException {
+    int rest = number;
+    while ((rest & ~0x7f) != 0) {
+      out.writeByte((rest & 0x7f) | 0x80);
+      rest >>>= 7;
+    }
+    out.writeByte(rest);
+  }
+
+  static void writeNullableString(final DataOutputStream out, final String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      writeString(out, s);
+    }
+  }
+
+  static void writeString(final DataOutputStream out, final String s) throws IOException {
+    final byte[] bytes = s.getBytes("UTF-8");
+    writeNumber(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Collects element specs of a document, along with the tables of distinct strings and attribute sets they use.
+   */
+  private static class SpecWriter {
+
+    private final Document doc;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+
+    private final List<AttributeSet> sets = new ArrayList<>();
+
+    private final Map<AttributeSet, Integer> setIndices = new HashMap<>();
+
+    private final ByteArrayOutputStream specs = new ByteArrayOutputStream();
+
+    private final DataOutputStream specOut = new DataOutputStream(this.specs);
+
+    private int specCount = 0;
+
+    public SpecWriter(final Document doc) {
+      this.doc = doc;
+    }
+
+    public void addElement(final Element elem) throws IOException {
+      if (elem.isLeaf()) {
+        // the last leaf contains the implicit newline at the end of the document, which is not part of the text
+        final int endOffset = Math.min(elem.getEndOffset(), this.doc.getLength());
+        addSpec(ElementSpec.ContentType, elem.getAttributes(), Math.max(0, endOffset - elem.getStartOffset()));
+      } else {
+        addSpec(ElementSpec.StartTagType, elem.getAttributes(), 0);
+        for (int i = 0; i < elem.getElementCount(); i++) {
+          addElement(elem.getElement(i));
+        }
+        addSpec(ElementSpec.EndTagType, null, 0);
+      }
+    }
+
+    public void addSpec(final short type, final AttributeSet attr, final int length) throws IOException {
+      this.specOut.writeByte(type);
+      writeNumber(this.specOut, attr == null ? 0 : addAttributeSet(attr) + 1);
+      if (type == ElementSpec.ContentType) {
+        writeNumber(this.specOut, length);
+      }
+      this.specCount++;
+    }
+
+    private int addAttributeSet(final AttributeSet attr) throws IOException {
+      final SimpleAttributeSet copy = new SimpleAttributeSet(attr);
+      Integer index = this.setIndices.get(copy);
+      if (index == null) {
+        // referenced strings and nested sets are registered first, so they can be resolved when reading
+        for (final Enumeration<?> names = copy.getAttributeNames(); names.hasMoreElements();) {
+          final Object key = names.nextElement();
+          final Object value = copy.getAttribute(key);
+          addString(key.toString());
+          if (value instanceof AttributeSet) {
+            addAttributeSet((AttributeSet) value);
+          } else if (!(value instanceof Boolean)) {
+            addString(value.toString());
+          }
+        }
+        index = this.sets.size();
+        this.sets.add(copy);
+        this.setIndices.put(copy, index);
+      }
+      return index;
+    }
+
+    private int addString(final String s) {
+      Integer index = this.stringIndices.get(s);
+      if (index == null) {
+        index = this.strings.size();
+        this.strings.add(s);
+        this.stringIndices.put(s, index);
+      }
+      return index;
+    }
+
+    public void writeAttributeSet(final DataOutputStream out, final AttributeSet attr) throws IOException {
+      writeNumber(out, attr.getAttributeCount());
+      for (final Enumeration<?> names = attr.getAttributeNames(); names.hasMoreElements();) {
+        final Object key = names.nextElement();
+        final Object value = attr.getAttribute(key);
+        if (key == StyleConstants.NameAttribute) {
+          out.writeByte(KEY_NAME);
+        } else if (key instanceof HTML.Tag) {
+          out.writeByte(KEY_TAG);
+        } else if (key instanceof HTML.Attribute) {
+          out.writeByte(KEY_HTML_ATTRIBUTE);
+        } else if (key instanceof CSS.Attribute) {
+          out.writeByte(KEY_CSS_ATTRIBUTE);
+        } else if (key instanceof String) {
+          out.writeByte(KEY_STRING);
+        } else {
+          throw new IOException("Unsupported attribute " + key);
+        }
+        writeNumber(out, addString(key.toString()));
+        if (value instanceof String) {
+          out.writeByte(VALUE_STRING);
+          writeNumber(out, addString((String) value));
+        } else if (value instanceof HTML.Tag) {
+          out.writeByte(VALUE_TAG);
+          writeNumber(out, addString(value.toString()));
+        } else if (value instanceof Boolean) {
+          out.writeByte(((Boolean) value).booleanValue() ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof AttributeSet) {
+          out.writeByte(VALUE_SET);
+          writeNumber(out, this.setIndices.get(new SimpleAttributeSet((AttributeSet) value)));
+        } else if (key instanceof CSS.Attribute) {
+          // internal CSS values are recreated from their CSS text by the style sheet
+          out.writeByte(VALUE_CSS);
+          writeNumber(out, addString(value.toString()));
+        } else {
+          throw new IOException("Unsupported value of attribute " + key + ": " + value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the information from the HTML head that is not part of the element structure - style sheets and base.
+   */
+  private static class HeadCollector extends HTMLEditorKit.ParserCallback {
+
+    private final List<Integer> styleKinds = new ArrayList<>();
+
+    private final List<String> styles = new ArrayList<>();
+
+    private String baseHref = null;
+
+    private StringBuilder styleText = null;
+
+    @Override
+    public void handleStartTag(final HTML.Tag t, final MutableAttributeSet a, final int pos) {
+      if (t == HTML.Tag.STYLE) {
+        this.styleText = new StringBuilder();
+      }
+    }
+
+    @Override
+    public void handleEndTag(final HTML.Tag t, final int pos) {
+      if (t == HTML.Tag.STYLE && this.styleText != null) {
+        this.styleKinds.add(STYLE_RULES);
+        this.styles.add(this.styleText.toString());
+        this.styleText = null;
+      }
+    }
+
+    @Override
+    public void handleText(final char[] data, final int pos) {
+      if (this.styleText != null) {
+        this.styleText.append(data);
+      }
+    }
+
+    @Override
+    public void handleComment(final char[] data, final int pos) {
+      if (this.styleText != null) {
+        this.styleText.append(data);
+      }
+    }
+
+    @Override
+    public void handleSimpleTag(final HTML.Tag t, final MutableAttributeSet a, final int pos) {
+      if (t == HTML.Tag.LINK) {
+        final Object rel = a.getAttribute(HTML.Attribute.REL);
+        final Object type = a.getAttribute(HTML.Attribute.TYPE);
+        final Object href = a.getAttribute(HTML.Attribute.HREF);
+        if (href != null && rel != null && "stylesheet".equalsIgnoreCase(rel.toString().trim())
+            && (type == null || "text/css".equalsIgnoreCase(type.toString().trim()))) {
+          this.styleKinds.add(STYLE_LINK);
+          this.styles.add(href.toString());
+        }
+      } else if (t == HTML.Tag.BASE) {
+        final Object href = a.getAttribute(HTML.Attribute.HREF);
+        if (href != null) {
+          this.baseHref = href.toString();
+        }
+      }
+    }
+  }
+
+  /**
+   * Build-time tool: precompiles all HTML pages (.html and .htm) in the given files or directories.
+   *
+   * @param args [-encoding charset] file or directory...
+   */
+  public static void main(final String[] args) {
+    if (args == null || args.length == 0) {
+      System.err.println("PrecompiledHelpPage needs files or directories with HTML pages as arguments, optionally preceded by -encoding <charset>.");
+      System.exit(1);
+    }
+    Charset charset = Charset.defaultCharset();
+    int firstFile = 0;
+    if (args.length > 2 && "-encoding".equals(args[0])) {
+      charset = Charset.forName(args[1]);
+      firstFile = 2;
+    }
+    int failures = 0;
+    for (int i = firstFile; i < args.length; i++) {
+      failures += compileAll(new File(args[i]), charset);
+    }
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  private static int compileAll(final File file, final Charset charset) {
+    int failures = 0;
+    if (file.isDirectory()) {
+      final File[] children = file.listFiles();
+      if (children != null) {
+        for (final File child : children) {
+          failures += compileAll(child, charset);
+        }
+      }
+    } else {
+      final String name = file.getName().toLowerCase();
+      if (name.endsWith(".html") || name.endsWith(".htm")) {
+        try {
+          compile(file, charset);
+          System.out.println("Precompiled " + file);
+        } catch (final IOException ex) {
+          System.err.println("Cannot precompile " + file + ": " + ex.getMessage());
+          failures++;
+        }
+      }
+    }
+    return failures;
+  }
+}
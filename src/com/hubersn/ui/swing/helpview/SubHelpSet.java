@@ -0,0 +1,187 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reference from a master helpset to a sub-helpset, e.g. the help of a plugin. The sub-helpset itself is only loaded
+ * when it is needed for the first time - when its TOC or index branch is expanded, one of its help IDs is
+ * requested or all pages are searched.
+ */
+public class SubHelpSet {
+
+  private final HelpContentProvider contentProvider;
+
+  private final String location;
+
+  private final String helpSetFile;
+
+  private final String title;
+
+  private volatile HelpSet helpSet;
+
+  private boolean failed;
+
+  /**
+   * Creates a new instance of SubHelpSet.
+   *
+   * @param master content provider of the master helpset.
+   * @param location location of the sub-helpset file, relative to the root of the master helpset.
+   * @param title title of the sub-helpset, e.g. shown for its TOC branch.
+   */
+  public SubHelpSet(final HelpContentProvider master, final String location, final String title) {
+    final int indexOfSlash = location.lastIndexOf('/');
+    this.contentProvider = indexOfSlash < 0
+        ? master
+        : new SubdirectoryHelpContentProvider(master, location.substring(0, indexOfSlash));
+    this.location = location;
+    this.helpSetFile = location.substring(indexOfSlash + 1);
+    this.title = title;
+  }
+
+  /**
+   * Creates a new instance of SubHelpSet for the same sub-helpset file, e.g. after it has been changed.
+   */
+  private SubHelpSet(final SubHelpSet previous, final HelpSet helpSet) {
+    this.contentProvider = previous.contentProvider;
+    this.location = previous.location;
+    this.helpSetFile = previous.helpSetFile;
+    this.title = previous.title;
+    this.helpSet = helpSet;
+  }
+
+  /**
+   * Returns the location of the sub-helpset file, relative to the root of the master helpset.
+   *
+   * @return location.
+   */
+  public String getLocation() {
+    return this.location;
+  }
+
+  /**
+   * Returns the title of the sub-helpset - known without loading it.
+   *
+   * @return title.
+   */
+  public String getTitle() {
+    return this.title;
+  }
+
+  /**
+   * Returns if the sub-helpset has already been loaded.
+   *
+   * @return loaded?
+   */
+  public boolean isLoaded() {
+    return this.helpSet != null;
+  }
+
+  /**
+   * Returns the sub-helpset, loading it on first use - loading parses the sub-helpset like HelpSet(String), so this
+   * should not be called on the EDT unless isLoaded returns true.
+   *
+   * @return sub-helpset, null if it cannot be loaded.
+   */
+  public HelpSet getHelpSet() {
+    HelpSet loadedHelpSet = this.helpSet;
+    if (loadedHelpSet == null) {
+      synchronized (this) {
+        loadedHelpSet = this.helpSet;
+        if (loadedHelpSet == null && !this.failed) {
+          try {
+            loadedHelpSet = new HelpSet(this.contentProvider, this.helpSetFile);
+            this.helpSet = loadedHelpSet;
+          } catch (final Exception ex) {
+            // only log once, the master helpset is usable without this sub-helpset
+            this.failed = true;
+            System.err.println("Failed to load sub-helpset " + this.location);
+            ex.printStackTrace();
+          }
+        }
+      }
+    }
+    return loadedHelpSet;
+  }
+
+  /**
+   * Returns a sub-helpset with the current content of the given changed files of the master helpset - changed files
+   * in the directory of the sub-helpset are reloaded like HelpSet.reload does, a sub-helpset that has not been loaded
+   * yet is loaded on first use again (also after a failure). If none of the files belongs to the sub-helpset, this
+   * sub-helpset is returned.
+   *
+   * @param changedPaths paths of changed files, relative to the root of the master helpset.
+   * @return sub-helpset with the current content.
+   * @throws Exception on error, e.g. if a changed file cannot be parsed.
+   */
+  SubHelpSet reload(final Collection<String> changedPaths) throws Exception {
+    final String directory = this.location.substring(0, this.location.lastIndexOf('/') + 1);
+    final List<String> subHelpSetPaths = new ArrayList<>();
+    for (final String changedPath : changedPaths) {
+      if (changedPath.startsWith(directory)) {
+        subHelpSetPaths.add(changedPath.substring(directory.length()));
+      }
+    }
+    if (subHelpSetPaths.isEmpty()) {
+      return this;
+    }
+    final HelpSet loadedHelpSet = this.helpSet;
+    return new SubHelpSet(this, loadedHelpSet == null ? null : loadedHelpSet.reload(subHelpSetPaths));
+  }
+
+  /**
+   * Returns the title of the given sub-helpset file without loading its map and views.
+   *
+   * @param master content provider of the master helpset.
+   * @param location location of the sub-helpset file, relative to the root of the master helpset.
+   * @return title, or the location if the file cannot be read.
+   */
+  static String readTitle(final HelpContentProvider master, final String location) {
+    try (InputStream is = master.getInputStream(location)) {
+      if (is != null) {
+        final String title = new XMLDocument(is).getTagValue("title");
+        if (!title.isEmpty()) {
+          return title;
+        }
+      }
+    } catch (final Exception ex) {
+      ex.printStackTrace();
+    }
+    return location;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * (c) hubersn Software
+ * www.hubersn.com
+ */
+
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org/>
+*/
+
+
+package com.hubersn.ui.swing.helpview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Provides the content of a subdirectory of another provider's content, e.g. for a sub-helpset located in a
+ * subdirectory of its master helpset.
+ */
+public class SubdirectoryHelpContentProvider implements HelpContentProvider {
+
+  private final HelpContentProvider parent;
+
+  private final String subdirectory;
+
+  /**
+   * Creates a new instance of SubdirectoryHelpContentProvider.
+   *
+   * @param parent provider of the parent content.
+   * @param subdirectory path of the subdirectory relative to the root of the parent provider, e.g. "plugin/help".
+   */
+  public SubdirectoryHelpContentProvider(final HelpContentProvider parent, final String subdirectory) {
+    this.parent = parent;
+    this.subdirectory = subdirectory.endsWith("/") ? subdirectory.substring(0, subdirectory.length() - 1) : subdirectory;
+  }
+
+  @Override
+  public String getName() {
+    return this.parent.getName() + "/" + this.subdirectory;
+  }
+
+  @Override
+  public URL getURL(final String path) {
+    return this.parent.getURL(this.subdirectory + "/" + path);
+  }
+
+  @Override
+  public InputStream getInputStream(final String path) throws IOException {
+    return this.parent.getInputStream(this.subdirectory + "/" + path);
+  }
+}
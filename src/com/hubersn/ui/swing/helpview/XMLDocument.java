@@ -33,35 +33,38 @@ For more information, please refer to <http://unlicense.org/>
 package com.hubersn.ui.swing.helpview;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
- * To simplify XML DOM handling. Read only, minimal wrapper for Java DOM standard API.
+ * To simplify XML handling. Read only, minimal tree of tags built in one pass with a streaming (StAX) parser, i.e.
+ * without creating a DOM first.
  */
 public class XMLDocument {
 
   /** Character to use for separating XML path elements. */
   public static final String XML_PATH_SEPARATOR = ":";
 
-  private final Document xmlDoc;
-
-  private final Element xmlRoot;
+  private static XMLInputFactory inputFactory = null;
 
   private final List<XMLTag> xmlTags = new ArrayList<>();
 
+  /** All tags by their path, built on first query. */
+  private Map<String, List<XMLTag>> pathIndex = null;
+
   /**
    * Creates a new XML document representation based on given source stream.
    *
@@ -69,82 +72,131 @@ public class XMLDocument {
    * @throws Exception on error.
    */
   public XMLDocument(final InputStream source) throws Exception {
-    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    // speed up XML parsing
-    factory.setNamespaceAware(false);
-    factory.setValidating(false);
-    factory.setFeature("http://xml.org/sax/features/namespaces", false);
-    factory.setFeature("http://xml.org/sax/features/validation", false);
-    factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-    factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-    // explicitly enable doctype declaration, needed for JavaHelp XML
-    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
-
-    final DocumentBuilder builder = factory.newDocumentBuilder();
-
-    this.xmlDoc = builder.parse(new BufferedInputStream(source, 16384));
-    this.xmlDoc.getDocumentElement().normalize();
-    this.xmlRoot = this.xmlDoc.getDocumentElement();
-    populate();
+    final XMLStreamReader reader = createStreamReader(source);
+    try {
+      populate(reader);
+    } finally {
+      reader.close();
+    }
   }
 
-  private void populate() {
-    final NodeList children = this.xmlRoot.getChildNodes();
-    for (int i = 0; i < children.getLength(); i++) {
-      final Node child = children.item(i);
-      if (child instanceof Element) {
-        add((Element) child, this.xmlTags);
-      }
+  /**
+   * Creates a streaming reader for the given XML source - non-validating, with DTDs (needed for JavaHelp XML)
+   * accepted but never loaded, text and CDATA sections coalesced and entity references replaced.
+   *
+   * @param source source input stream.
+   * @return new stream reader.
+   * @throws XMLStreamException on error.
+   */
+  static XMLStreamReader createStreamReader(final InputStream source) throws XMLStreamException {
+    final XMLInputFactory factory = getInputFactory();
+    // factories are not guaranteed to be thread-safe
+    synchronized (factory) {
+      return factory.createXMLStreamReader(new BufferedInputStream(source, 16384));
     }
   }
 
-  private static void add(final Element child, final List<XMLTag> tags) {
-    final XMLTag tag = getTag(child);
-    if (tags != null) {
-      tags.add(tag);
+  private static synchronized XMLInputFactory getInputFactory() {
+    if (inputFactory == null) {
+      final XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+      factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      // external DTDs (e.g. JavaHelp's on the web) are never loaded
+      factory.setXMLResolver(new XMLResolver() {
+        @Override
+        public Object resolveEntity(final String publicID, final String systemID, final String baseURI, final String namespace) {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+      });
+      inputFactory = factory;
     }
-    // children
-    final NodeList children = child.getChildNodes();
-    for (int i = 0; i < children.getLength(); i++) {
-      final Node node = children.item(i);
-      if (node instanceof Element) {
-        add((Element) node, tag.children);
+    return inputFactory;
+  }
+
+  private void populate(final XMLStreamReader reader) throws XMLStreamException {
+    // open tags, the root element itself is not part of the tag tree
+    final List<TagBuilder> openTags = new ArrayList<>();
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          final TagBuilder tagBuilder = new TagBuilder(reader.getLocalName());
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            tagBuilder.addAttribute(new XMLAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i)));
+          }
+          openTags.add(tagBuilder);
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          final TagBuilder closed = openTags.remove(openTags.size() - 1);
+          if (openTags.size() == 1) {
+            this.xmlTags.add(closed.build());
+          } else if (openTags.size() > 1) {
+            openTags.get(openTags.size() - 1).addChild(closed.build());
+          }
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (!openTags.isEmpty()) {
+            openTags.get(openTags.size() - 1).appendText(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          }
+          break;
+        default:
+          break;
       }
     }
   }
 
-  private static XMLTag getTag(final Element source) {
-    final XMLTag tag = new XMLTag(source.getTagName(), getNodeTextContent(source));
-    // attributes
-    final NamedNodeMap nnm = source.getAttributes();
-    for (int i = 0; i < nnm.getLength(); i++) {
-      final Node node = nnm.item(i);
-      if (node instanceof Attr) {
-        tag.attributes.add(new XMLAttribute((Attr) node));
+  /**
+   * Collects name, attributes, children and text of a tag until its end is reached.
+   */
+  private static class TagBuilder {
+
+    private final String name;
+
+    private List<XMLAttribute> attributes = null;
+
+    private List<XMLTag> children = null;
+
+    private StringBuilder text = null;
+
+    public TagBuilder(final String name) {
+      this.name = name;
+    }
+
+    public void addAttribute(final XMLAttribute attribute) {
+      if (this.attributes == null) {
+        this.attributes = new ArrayList<>();
       }
+      this.attributes.add(attribute);
     }
-    return tag;
-  }
 
-  private static String getNodeTextContent(final Node node) {
-    final StringBuilder result = new StringBuilder();
-    if (!node.hasChildNodes()) {
-      return "";
+    public void addChild(final XMLTag child) {
+      if (this.children == null) {
+        this.children = new ArrayList<>();
+      }
+      this.children.add(child);
     }
 
-    final NodeList list = node.getChildNodes();
-    for (int i = 0; i < list.getLength(); i++) {
-      final Node subnode = list.item(i);
-      if (subnode.getNodeType() == Node.TEXT_NODE) {
-        result.append(subnode.getNodeValue());
-      } else if (subnode.getNodeType() == Node.CDATA_SECTION_NODE) {
-        result.append(subnode.getNodeValue());
-      } else if (subnode.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
-        result.append(getNodeTextContent(subnode));
+    public void appendText(final char[] chars, final int start, final int length) {
+      if (this.text == null) {
+        this.text = new StringBuilder(length);
       }
+      this.text.append(chars, start, length);
     }
 
-    return result.toString();
+    public XMLTag build() {
+      final XMLTag tag = new XMLTag(this.name, this.text == null ? "" : this.text.toString());
+      if (this.attributes != null) {
+        tag.attributes.addAll(this.attributes);
+      }
+      if (this.children != null) {
+        tag.children.addAll(this.children);
+      }
+      return tag;
+    }
   }
 
   /**
@@ -154,11 +206,8 @@ public class XMLDocument {
    * @return tag for given path, null if not found.
    */
   public XMLTag getTag(final String path) {
-    return getTag(p(path));
-  }
-
-  private XMLTag getTag(final String[] path) {
-    return getTag(path, 0, this.xmlTags);
+    final List<XMLTag> tags = getTags(path);
+    return tags.isEmpty() ? null : tags.get(0);
   }
 
   /**
@@ -168,7 +217,11 @@ public class XMLDocument {
    * @return text inside tag for given path, empty string if not found.
    */
   public String getTagValue(final String path) {
-    return getTagValue(p(path));
+    final XMLTag tag = getTag(path);
+    if (tag != null) {
+      return tag.text;
+    }
+    return "";
   }
 
   /**
@@ -186,58 +239,39 @@ public class XMLDocument {
     return "";
   }
 
-  private String getTagValue(final String[] path) {
-    final XMLTag tag = getTag(path, 0, this.xmlTags);
-    if (tag != null) {
-      return tag.text;
-    }
-    return "";
-  }
-
-  private XMLTag getTag(final String[] path, final int pathIndex, final List<XMLTag> listToRecurse) {
-    if (pathIndex >= path.length) {
-      return null;
-    }
-    final List<XMLTag> allTags = getTags(path, pathIndex, listToRecurse);
-    if (!allTags.isEmpty()) {
-      return allTags.get(0);
-    }
-    return null;
-  }
-
   /**
-   * Returns all tags for the given path (tag names separated by XML_PATH_SEPARATOR).
+   * Returns all tags for the given path (tag names separated by XML_PATH_SEPARATOR) in document order, collected
+   * from all branches matching the path.
    * 
    * @param path path.
-   * @return all tags for path.
+   * @return all tags for path, unmodifiable.
    */
   public List<XMLTag> getTags(final String path) {
-    return getTags(p(path), 0, this.xmlTags);
+    final List<XMLTag> tags = getPathIndex().get(path);
+    return tags == null ? Collections.<XMLTag>emptyList() : Collections.unmodifiableList(tags);
   }
 
-  private List<XMLTag> getTags(final String[] path, final int pathIndex, final List<XMLTag> listToRecurse) {
-    if (pathIndex >= path.length) {
-      return Collections.emptyList();
+  private synchronized Map<String, List<XMLTag>> getPathIndex() {
+    if (this.pathIndex == null) {
+      this.pathIndex = new HashMap<>();
+      addToPathIndex(null, this.xmlTags);
     }
-    final String pathElement = path[pathIndex];
-    final boolean lastElement = path.length == pathIndex + 1;
-    // check if element exists
-    final List<XMLTag> returnTags = new ArrayList<>();
-    for (final XMLTag tag : listToRecurse) {
-      if (tag.tag.equals(pathElement)) {
-        if (lastElement) {
-          returnTags.add(tag);
-        } else {
-          // TODO need to collect all, not only one
-          return getTags(path, pathIndex + 1, tag.children);
-        }
-      }
-    }
-    return returnTags;
+    return this.pathIndex;
   }
 
-  private static String[] p(final String pipeSeparatedPathString) {
-    return pipeSeparatedPathString.split(XML_PATH_SEPARATOR);
+  private void addToPathIndex(final String parentPath, final List<XMLTag> tags) {
+    for (final XMLTag tag : tags) {
+      final String path = parentPath == null ? tag.tag : parentPath + XML_PATH_SEPARATOR + tag.tag;
+      List<XMLTag> tagsForPath = this.pathIndex.get(path);
+      if (tagsForPath == null) {
+        tagsForPath = new ArrayList<>();
+        this.pathIndex.put(path, tagsForPath);
+      }
+      tagsForPath.add(tag);
+      if (!tag.children.isEmpty()) {
+        addToPathIndex(path, tag.children);
+      }
+    }
   }
 
   /**